@@ -9,10 +9,13 @@ import us.tastybento.bskyblock.commands.AdminCommand;
 import us.tastybento.bskyblock.commands.IslandCommand;
 import us.tastybento.bskyblock.database.BSBDbSetup;
 import us.tastybento.bskyblock.generators.IslandWorld;
+import us.tastybento.bskyblock.listeners.EntityLimitsListener;
+import us.tastybento.bskyblock.listeners.IslandChunkListener;
 import us.tastybento.bskyblock.listeners.JoinLeaveListener;
 import us.tastybento.bskyblock.listeners.NetherPortals;
 import us.tastybento.bskyblock.listeners.ObsidianToLava;
 import us.tastybento.bskyblock.listeners.PanelListenerManager;
+import us.tastybento.bskyblock.listeners.TileEntityLimitsListener;
 import us.tastybento.bskyblock.managers.AddonsManager;
 import us.tastybento.bskyblock.managers.CommandsManager;
 import us.tastybento.bskyblock.managers.FlagsManager;
@@ -54,6 +57,9 @@ public class BSkyBlock extends JavaPlugin {
 
     private HeadGetter headGetter;
 
+    // Tile entity limits
+    private TileEntityLimitsListener tileEntityLimits;
+
     @Override
     public void onEnable(){
         // Save the default config from config.yml
@@ -150,6 +156,12 @@ public class BSkyBlock extends JavaPlugin {
         manager.registerEvents(new NetherPortals(this), this);
         // Obsidian to lava helper
         manager.registerEvents(new ObsidianToLava(this), this);
+        // Island chunk table
+        manager.registerEvents(new IslandChunkListener(this), this);
+        // Island entity limits
+        manager.registerEvents(new EntityLimitsListener(this), this);
+        tileEntityLimits = new TileEntityLimitsListener(this);
+        manager.registerEvents(tileEntityLimits, this);
     }
 
     @Override
@@ -290,4 +302,11 @@ public class BSkyBlock extends JavaPlugin {
     public HeadGetter getHeadGetter() {
         return headGetter;
     }
+
+    /**
+     * @return the tile entity counts and limits
+     */
+    public TileEntityLimitsListener getTileEntityLimits() {
+        return tileEntityLimits;
+    }
 }
@@ -73,6 +73,21 @@ public class Settings implements ISettings<Settings> {
     @ConfigEntry(path = "general.database.backup-period")
     private int databaseBackupPeriod = 5;
 
+    @ConfigEntry(path = "general.database.lazy-island-loading")
+    private boolean lazyIslandLoading = false;
+
+    @ConfigEntry(path = "general.database.island-idle-time")
+    private int islandIdleTime = 10;
+
+    @ConfigEntry(path = "general.database.load-threads")
+    private int databaseLoadThreads = 0;
+
+    @ConfigEntry(path = "general.database.pool-size")
+    private int databasePoolSize = 4;
+
+    @ConfigEntry(path = "general.database.fetch-size")
+    private int databaseFetchSize = 0;
+
     @ConfigEntry(path = "general.fakeplayers")
     private Set<String> fakePlayers = new HashSet<>();
 
@@ -335,6 +350,36 @@ public class Settings implements ISettings<Settings> {
     public DatabaseType getDatabaseType() {
         return databaseType;
     }
+    /**
+     * @return true if only the island index is loaded at startup
+     */
+    public boolean isLazyIslandLoading() {
+        return lazyIslandLoading;
+    }
+    /**
+     * @return the islandIdleTime in minutes
+     */
+    public int getIslandIdleTime() {
+        return islandIdleTime;
+    }
+    /**
+     * @return the number of threads used to load flat file data at startup. 0 means one per processor.
+     */
+    public int getDatabaseLoadThreads() {
+        return databaseLoadThreads;
+    }
+    /**
+     * @return the number of connections each MySQL table can have open at once
+     */
+    public int getDatabasePoolSize() {
+        return databasePoolSize;
+    }
+    /**
+     * @return the number of rows read from MySQL at a time when loading. 0 means one at a time.
+     */
+    public int getDatabaseFetchSize() {
+        return databaseFetchSize;
+    }
     /**
      * @return the dbHost
      */
@@ -880,6 +925,36 @@ public class Settings implements ISettings<Settings> {
     public void setDatabaseType(DatabaseType databaseType) {
         this.databaseType = databaseType;
     }
+    /**
+     * @param lazyIslandLoading the lazyIslandLoading to set
+     */
+    public void setLazyIslandLoading(boolean lazyIslandLoading) {
+        this.lazyIslandLoading = lazyIslandLoading;
+    }
+    /**
+     * @param databaseLoadThreads the databaseLoadThreads to set
+     */
+    public void setDatabaseLoadThreads(int databaseLoadThreads) {
+        this.databaseLoadThreads = databaseLoadThreads;
+    }
+    /**
+     * @param databasePoolSize the databasePoolSize to set
+     */
+    public void setDatabasePoolSize(int databasePoolSize) {
+        this.databasePoolSize = databasePoolSize;
+    }
+    /**
+     * @param databaseFetchSize the databaseFetchSize to set
+     */
+    public void setDatabaseFetchSize(int databaseFetchSize) {
+        this.databaseFetchSize = databaseFetchSize;
+    }
+    /**
+     * @param islandIdleTime the islandIdleTime to set
+     */
+    public void setIslandIdleTime(int islandIdleTime) {
+        this.islandIdleTime = islandIdleTime;
+    }
     /**
      * @param dbHost the dbHost to set
      */
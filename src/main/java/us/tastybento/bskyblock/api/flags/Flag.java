@@ -22,6 +22,8 @@ public class Flag implements Comparable<Flag> {
     private final Listener listener;
     private final Type type;
     private boolean defaultSetting;
+    private int ordinal = -1;
+    private static boolean ordinalSetterTaken;
 
     Flag(String id, Material icon, Listener listener, boolean defaultSetting, Type type) {
         this.id = id;
@@ -58,6 +60,42 @@ public class Flag implements Comparable<Flag> {
         this.defaultSetting = defaultSetting;
     }
 
+    /**
+     * @return the index of this flag in the FlagsManager, or -1 if it is not registered
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Set by the FlagsManager when the flag is registered
+     * @param ordinal - the index of this flag in the FlagsManager
+     */
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Sets the ordinal of a flag when it is registered
+     */
+    @FunctionalInterface
+    public interface OrdinalSetter {
+        void setOrdinal(Flag flag, int ordinal);
+    }
+
+    /**
+     * Gives the FlagsManager the only way to set flag ordinals. It can only be called once.
+     * @return ordinal setter
+     * @throws IllegalStateException if it has already been called
+     */
+    public static synchronized OrdinalSetter ordinalSetter() {
+        if (ordinalSetterTaken) {
+            throw new IllegalStateException("Flag ordinals can only be set by the FlagsManager");
+        }
+        ordinalSetterTaken = true;
+        return Flag::setOrdinal;
+    }
+
     /**
      * @return the type
      */
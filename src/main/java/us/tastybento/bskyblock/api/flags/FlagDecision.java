@@ -0,0 +1,78 @@
+package us.tastybento.bskyblock.api.flags;
+
+import java.util.Optional;
+
+import us.tastybento.bskyblock.database.objects.Island;
+
+/**
+ * The result of checking a flag at a location. It has no side effects, so it is up to the
+ * caller to cancel events or tell the user.
+ *
+ * @author tastybento
+ *
+ */
+public final class FlagDecision {
+
+    public enum Reason {
+        /**
+         * The location is not in an island world, so the flag does not apply
+         */
+        NOT_IN_WORLD,
+        /**
+         * Decided by the island's setting, or the flag default if there is no island
+         */
+        SETTING,
+        /**
+         * Decided by the user's rank on the island
+         */
+        ISLAND_RANK,
+        /**
+         * There is no island at the location, so the flag default applies
+         */
+        WORLD_DEFAULT,
+        /**
+         * The flag is a protection flag but there is no user to check
+         */
+        NO_USER,
+        /**
+         * The user is a fake player listed in the settings, whose actions are not checked
+         */
+        FAKE_PLAYER
+    }
+
+    private final boolean allowed;
+    private final Reason reason;
+    private final Island island;
+
+    /**
+     * @param allowed - true if allowed
+     * @param reason - why
+     * @param island - the island at the location, or null if there is none
+     */
+    public FlagDecision(boolean allowed, Reason reason, Island island) {
+        this.allowed = allowed;
+        this.reason = reason;
+        this.island = island;
+    }
+
+    /**
+     * @return true if allowed, false if not
+     */
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * @return the reason for the decision
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the island at the location that was checked
+     */
+    public Optional<Island> getIsland() {
+        return Optional.ofNullable(island);
+    }
+}
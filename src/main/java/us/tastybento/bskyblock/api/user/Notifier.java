@@ -1,64 +1,81 @@
 package us.tastybento.bskyblock.api.user;
 
-import java.util.concurrent.ExecutionException;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * Utilities class that helps to avoid spamming the User with potential repeated messages
+ * Utilities class that helps to avoid spamming the User with potential repeated messages.
+ * The last notification is kept on each User, so there is no limit on the number of users
+ * and no lock is taken.
  * @author Poslovitch
  */
 public class Notifier {
 
     /**
-     * Time in seconds before {@link #notificationCache} removes the entry related to the player.
+     * Time in seconds before the same message can be sent to a user again.
      */
-    private final int NOTIFICATION_DELAY = 5;
+    public static final int NOTIFICATION_DELAY = 5;
 
-    private final LoadingCache<User, Notification> notificationCache = CacheBuilder.newBuilder()
-            .expireAfterAccess(NOTIFICATION_DELAY, TimeUnit.SECONDS)
-            .maximumSize(500)
-            .build(
-                    new CacheLoader<User, Notification>() {
-                        @Override
-                        public Notification load(User user) throws Exception {
-                            return new Notification(null, 0);
-                        }
-                    }
-            );
+    private static final long DELAY_NANOS = TimeUnit.SECONDS.toNanos(NOTIFICATION_DELAY);
 
-    public synchronized boolean notify(User user, String message) {
-        try {
-            Notification lastNotification = notificationCache.get(user);
-            long now = System.currentTimeMillis();
-            if (now >= lastNotification.getTime() + NOTIFICATION_DELAY * 1000 || !message.equals(lastNotification.getMessage())) {
-                notificationCache.put(user, new Notification(message, now));
-                user.sendRawMessage(message);
-            }
-            return true;
-        } catch (ExecutionException e) {
-            return false;
-        }
-    }
+    private static final AtomicReferenceFieldUpdater<User, Notification> LAST = AtomicReferenceFieldUpdater.newUpdater(User.class, Notification.class, "lastNotification");
 
-    public class Notification {
-        private final String message;
+    /**
+     * A message sent to a user and when it was sent
+     */
+    static final class Notification {
+        private final String id;
+        private final Locale locale;
         private final long time;
 
-        public Notification(String message, long time) {
-            this.message = message;
+        Notification(String id, Locale locale, long time) {
+            this.id = id;
+            this.locale = locale;
             this.time = time;
         }
+    }
 
-        public String getMessage() {
-            return message;
+    /**
+     * Checks if a message with this id can be sent to the user in this locale now. If it can, it is recorded as sent.
+     * A message is held back if the same id in the same locale was the last message sent to the user, within the
+     * previous {@link #NOTIFICATION_DELAY} seconds. If two threads check the same message for the same user at the
+     * same time, only one of them is told yes.
+     * @param user - the User
+     * @param id - message id, for example the locale reference
+     * @param locale - locale the message is sent in, or null if it is already translated
+     * @return true if the message should be sent
+     */
+    public boolean canNotify(User user, String id, Locale locale) {
+        long now = System.nanoTime();
+        Notification next = null;
+        while (true) {
+            Notification last = user.lastNotification;
+            if (last != null && now - last.time < DELAY_NANOS && id.equals(last.id) && Objects.equals(locale, last.locale)) {
+                return false;
+            }
+            if (next == null) {
+                next = new Notification(id, locale, now);
+            }
+            if (LAST.compareAndSet(user, last, next)) {
+                return true;
+            }
+            // Another message was recorded for this user at the same time, so check against that one
         }
+    }
 
-        public long getTime() {
-            return time;
+    /**
+     * Sends the message to the user unless the same message was sent within the previous {@link #NOTIFICATION_DELAY} seconds
+     * @param user - the User
+     * @param message - message to send
+     * @return true if the message was sent
+     */
+    public boolean notify(User user, String message) {
+        if (canNotify(user, message, null)) {
+            user.sendRawMessage(message);
+            return true;
         }
+        return false;
     }
 }
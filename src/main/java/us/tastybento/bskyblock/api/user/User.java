@@ -81,6 +81,9 @@ public class User {
     private final UUID playerUUID;
     private final CommandSender sender;
 
+    // The last notification sent to this user. Used by the Notifier.
+    volatile Notifier.Notification lastNotification;
+
     private User(CommandSender sender) {
         player = null;
         playerUUID = null;
@@ -229,15 +232,20 @@ public class User {
     }
 
     /**
-     * Sends a message to sender if message is not empty and if the same wasn't sent within the previous {@link Notifier#NOTIFICATION_DELAY} seconds.
+     * Sends a message to sender if message is not empty and if the same reference wasn't sent in the same locale within the previous {@link Notifier#NOTIFICATION_DELAY} seconds.
+     * The message is only translated if it is going to be sent.
      * @param reference - language file reference
      * @param variables - CharSequence target, replacement pairs
      *
      * @see Notifier
      */
     public void notify(String reference, String... variables) {
+        Notifier notifier = plugin.getNotifier();
+        if (notifier != null && !notifier.canNotify(this, reference, getLocale())) {
+            return;
+        }
         String message = getTranslation(reference, variables);
-        if (!ChatColor.stripColor(message).trim().isEmpty() && (sender != null || !plugin.getNotifier().notify(this, message))) {
+        if (!ChatColor.stripColor(message).trim().isEmpty()) {
             sendRawMessage(message);
         }
     }
@@ -5,6 +5,7 @@ import java.util.List;
 import us.tastybento.bskyblock.Constants;
 import us.tastybento.bskyblock.api.commands.CompositeCommand;
 import us.tastybento.bskyblock.api.user.User;
+import us.tastybento.bskyblock.commands.admin.AdminCheckCacheCommand;
 import us.tastybento.bskyblock.commands.admin.AdminReloadCommand;
 import us.tastybento.bskyblock.commands.admin.AdminTeleportCommand;
 import us.tastybento.bskyblock.commands.admin.AdminVersionCommand;
@@ -26,6 +27,7 @@ public class AdminCommand extends CompositeCommand {
         new AdminTeleportCommand(this, "tp");
         new AdminTeleportCommand(this, "tpnether");
         new AdminTeleportCommand(this, "tpend");
+        new AdminCheckCacheCommand(this);
     }
 
     @Override
@@ -0,0 +1,43 @@
+package us.tastybento.bskyblock.commands.admin;
+
+import java.util.List;
+
+import us.tastybento.bskyblock.Constants;
+import us.tastybento.bskyblock.api.commands.CompositeCommand;
+import us.tastybento.bskyblock.api.user.User;
+import us.tastybento.bskyblock.managers.island.IslandChunkCache;
+
+/**
+ * Checks the island cache indexes agree with each other
+ * @author tastybento
+ *
+ */
+public class AdminCheckCacheCommand extends CompositeCommand {
+
+    public AdminCheckCacheCommand(CompositeCommand parent) {
+        super(parent, "checkcache");
+    }
+
+    @Override
+    public void setup() {
+        setPermission(Constants.PERMPREFIX + "admin.checkcache");
+        setOnlyPlayer(false);
+        setDescription("commands.admin.checkcache.description");
+    }
+
+    @Override
+    public boolean execute(User user, List<String> args) {
+        IslandChunkCache chunkCache = getIslands().getChunkCache();
+        user.sendMessage("commands.admin.checkcache.chunk-table", "[chunks]", String.valueOf(chunkCache.size()),
+                "[hits]", String.valueOf(chunkCache.getHits()), "[misses]", String.valueOf(chunkCache.getMisses()));
+        List<String> problems = getIslands().checkCache();
+        if (problems.isEmpty()) {
+            user.sendMessage("commands.admin.checkcache.consistent");
+            return true;
+        }
+        user.sendMessage("commands.admin.checkcache.inconsistent", "[number]", String.valueOf(problems.size()));
+        problems.forEach(user::sendRawMessage);
+        return true;
+    }
+
+}
@@ -2,10 +2,16 @@ package us.tastybento.bskyblock.database;
 
 import java.beans.IntrospectionException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.bukkit.plugin.Plugin;
 
+import us.tastybento.bskyblock.database.objects.DataObject;
+
 /**
  * An abstract class that handles insert/select-operations into/from a database
  *
@@ -52,6 +58,33 @@ public abstract class AbstractDatabaseHandler<T> {
      */
     public abstract List<T> loadObjects() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, ClassNotFoundException, IntrospectionException;
 
+    /**
+     * Loads all the records in this table and passes them to the consumer one at a time, in the order they are read.
+     * Handlers that can read records without holding them all in memory should override this.
+     * @param consumer - receives each object
+     * @return number of objects loaded
+     */
+    public int loadObjects(Consumer<T> consumer) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, ClassNotFoundException, IntrospectionException {
+        List<T> list = loadObjects();
+        list.forEach(consumer);
+        return list.size();
+    }
+
+    /**
+     * Gets the unique ids of all the records in this table.
+     * Handlers that can read the ids without loading the objects should override this.
+     * @return unique ids, or null if they cannot be read
+     */
+    public Set<String> loadUniqueIds() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, ClassNotFoundException, IntrospectionException {
+        Set<String> ids = new HashSet<>();
+        loadObjects(object -> {
+            if (object instanceof DataObject) {
+                ids.add(((DataObject)object).getUniqueId());
+            }
+        });
+        return ids;
+    }
+
     /**
      * Creates a <T> filled with values from the corresponding
      * database file
@@ -67,6 +100,26 @@ public abstract class AbstractDatabaseHandler<T> {
      */
     public abstract void saveObject(T instance) throws IllegalAccessException, IllegalArgumentException, InvocationTargetException, IntrospectionException ;
 
+    /**
+     * Saves the objects. Handlers that can write several objects at once should override this.
+     * Objects that cannot be saved are logged and returned.
+     *
+     * @param instances - objects to save
+     * @return the objects that could not be saved
+     */
+    public List<T> saveObjects(List<T> instances) {
+        List<T> failed = new ArrayList<>();
+        for (T instance : instances) {
+            try {
+                saveObject(instance);
+            } catch (Exception e) {
+                plugin.getLogger().severe(() -> "Could not save object to database! Error: " + e.getMessage());
+                failed.add(instance);
+            }
+        }
+        return failed;
+    }
+
     /**
      * Deletes the object with the unique id from the database
      * @param instance
@@ -4,6 +4,8 @@ import java.beans.IntrospectionException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import us.tastybento.bskyblock.BSkyBlock;
@@ -19,18 +21,20 @@ public class BSBDatabase<T> {
 
     private AbstractDatabaseHandler<T> handler;
     private Logger logger;
+    private WriteBehindQueue<T> writeBehind;
 
     @SuppressWarnings("unchecked")
     public BSBDatabase(BSkyBlock plugin, Class<T> type)  {
         this.logger = plugin.getLogger();
         handler = (AbstractDatabaseHandler<T>) BSBDbSetup.getDatabase().getHandler(type);
+        writeBehind = new WriteBehindQueue<>(handler, logger);
     }
 
     @SuppressWarnings("unchecked")
     public BSBDatabase(Addon addon, Class<T> type)  {
         this.logger = addon.getLogger();
         handler = (AbstractDatabaseHandler<T>) BSBDbSetup.getDatabase().getHandler(type);
-       
+        writeBehind = new WriteBehindQueue<>(handler, logger);
     }
 
     /**
@@ -48,6 +52,36 @@ public class BSBDatabase<T> {
         return result;
     }
 
+    /**
+     * Load all the config objects and pass them to the consumer one at a time.
+     * Databases that support it read the objects without holding them all in memory.
+     * @param consumer - receives each object
+     * @return number of objects loaded
+     */
+    public int loadObjects(Consumer<T> consumer) {
+        try {
+            return handler.loadObjects(consumer);
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+                | InvocationTargetException | ClassNotFoundException | IntrospectionException e) {
+            logger.severe(() -> "Could not load objects from database! Error: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the unique ids of all the objects, without loading them if the database supports it
+     * @return unique ids, or null if they cannot be loaded
+     */
+    public Set<String> loadUniqueIds() {
+        try {
+            return handler.loadUniqueIds();
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+                | InvocationTargetException | ClassNotFoundException | IntrospectionException e) {
+            logger.severe(() -> "Could not load object ids from database! Error: " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Loads the config object
      * @param uniqueId - unique id of the object
@@ -80,6 +114,39 @@ public class BSBDatabase<T> {
         return true;
     }
 
+    /**
+     * Queues the object to be saved on the database writer thread.
+     * If it is queued again before it is written, it is only written once, with its latest state.
+     * If it cannot be saved, it is logged and, if it is a {@link us.tastybento.bskyblock.database.objects.DataObject}, marked dirty again.
+     * @param instance to save
+     */
+    public void saveObjectAsync(T instance) {
+        writeBehind.save(instance);
+    }
+
+    /**
+     * Queues the object to be deleted on the database writer thread. Any save waiting for it is dropped.
+     * @param object - object to delete
+     */
+    public void deleteObjectAsync(T object) {
+        writeBehind.delete(object);
+    }
+
+    /**
+     * @param instance - object
+     * @return true if the object is waiting to be written, or is being written, by the database writer
+     */
+    public boolean isPending(T instance) {
+        return writeBehind.isPending(instance);
+    }
+
+    /**
+     * Writes everything that is queued, on this thread
+     */
+    public void flush() {
+        writeBehind.flush();
+    }
+
     /**
      * Checks if a config object exists or not
      * @param name - unique name of the config object
@@ -90,22 +157,20 @@ public class BSBDatabase<T> {
     }
 
     /**
-     * Delete object from database
+     * Delete object from database.
+     * The delete is queued on the database writer thread like {@link #deleteObjectAsync(Object)},
+     * so the caller never waits for the database. Any save waiting for the object is dropped.
      * @param object - object to delete
      */
     public void deleteObject(T object) {
-        try {
-            handler.deleteObject(object);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException
-                | IntrospectionException e) {
-            logger.severe(() -> "Could not delete config! Error: " + e.getMessage());
-        }       
+        writeBehind.delete(object);
     }
 
     /**
-     * Close the database
+     * Writes everything that is queued and closes the database
      */
     public void close() {
+        writeBehind.flush();
         handler.close(); 
     }
 
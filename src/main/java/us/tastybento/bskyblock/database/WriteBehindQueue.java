@@ -0,0 +1,226 @@
+package us.tastybento.bskyblock.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+
+import us.tastybento.bskyblock.database.objects.DataObject;
+
+/**
+ * Queues saves and deletes for one database handler and writes them on a background thread.
+ * Requests are kept per key, so if an object is queued again before it is written, it is only written once.
+ * All queues share one writer thread, which writes each queue in batches and in the order the keys were first queued.
+ * The main thread never waits for the writer. Other threads wait if too many objects are waiting to be written.
+ *
+ * @author tastybento
+ *
+ * @param <T> the type of object that is written
+ */
+class WriteBehindQueue<T> {
+
+    /**
+     * Most objects written in one batch
+     */
+    private static final int BATCH_SIZE = 100;
+    /**
+     * Number of waiting objects above which threads other than the main thread wait before queuing more
+     */
+    private static final int CAPACITY = 10000;
+
+    // One writer for all the queues. The thread stops when there is nothing to write.
+    private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "BSkyBlock database writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Request<T> {
+        private final T instance;
+        private final boolean delete;
+
+        Request(T instance, boolean delete) {
+            this.instance = instance;
+            this.delete = delete;
+        }
+    }
+
+    private final AbstractDatabaseHandler<T> handler;
+    private final Logger logger;
+    // The latest request for each key. A request stays here until it has been written.
+    private final Map<Object, Request<T>> pending = new ConcurrentHashMap<>();
+    // Keys in the order they were queued
+    private final Queue<Object> order = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Held while writing, so writes to the handler are never interleaved
+    private final Object writeLock = new Object();
+    private final Object room = new Object();
+
+    /**
+     * @param handler - database handler to write to
+     * @param logger - logger for errors
+     */
+    WriteBehindQueue(AbstractDatabaseHandler<T> handler, Logger logger) {
+        this.handler = handler;
+        this.logger = logger;
+    }
+
+    /**
+     * Gets the key that requests for this object are kept under
+     * @param instance - object
+     * @return its unique id, or the object itself if it does not have one yet
+     */
+    static Object keyOf(Object instance) {
+        if (instance instanceof DataObject && ((DataObject)instance).getUniqueId() != null) {
+            return ((DataObject)instance).getUniqueId();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the object to be saved
+     * @param instance - object
+     */
+    void save(T instance) {
+        enqueue(keyOf(instance), new Request<>(instance, false));
+    }
+
+    /**
+     * Queues the object to be deleted. Any save that is waiting for it is dropped.
+     * A save queued after this replaces the delete.
+     * @param instance - object
+     */
+    void delete(T instance) {
+        enqueue(keyOf(instance), new Request<>(instance, true));
+    }
+
+    /**
+     * @param instance - object
+     * @return true if the object is waiting to be written or is being written
+     */
+    boolean isPending(T instance) {
+        return pending.containsKey(keyOf(instance));
+    }
+
+    /**
+     * Writes everything that is waiting, on this thread
+     */
+    void flush() {
+        while (writeBatch()) {
+            // Keep going until there is nothing left
+        }
+    }
+
+    private void enqueue(Object key, Request<T> request) {
+        if (pending.size() >= CAPACITY && !Bukkit.isPrimaryThread()) {
+            waitForRoom();
+        }
+        if (pending.put(key, request) == null) {
+            order.add(key);
+            schedule();
+        }
+    }
+
+    private void waitForRoom() {
+        synchronized (room) {
+            while (pending.size() >= CAPACITY) {
+                try {
+                    room.wait(1000L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            WRITER.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            flush();
+        } finally {
+            scheduled.set(false);
+            // Something may have been queued after the last batch
+            if (!order.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Writes up to {@link #BATCH_SIZE} objects
+     * @return true if anything was written
+     */
+    private boolean writeBatch() {
+        synchronized (writeLock) {
+            Map<Object, Request<T>> batch = new LinkedHashMap<>();
+            Object key;
+            while (batch.size() < BATCH_SIZE && (key = order.poll()) != null) {
+                Request<T> request = pending.get(key);
+                if (request != null) {
+                    batch.put(key, request);
+                }
+            }
+            if (batch.isEmpty()) {
+                return !order.isEmpty();
+            }
+            List<T> saves = new ArrayList<>();
+            for (Request<T> request : batch.values()) {
+                if (request.delete) {
+                    // Saves queued before the delete are written first, so the order is kept
+                    saveNow(saves);
+                    deleteNow(request.instance);
+                } else {
+                    saves.add(request.instance);
+                }
+            }
+            saveNow(saves);
+            batch.forEach((k, request) -> {
+                // If the object was queued again while it was being written, it needs writing again
+                if (!pending.remove(k, request) && pending.containsKey(k)) {
+                    order.add(k);
+                }
+            });
+        }
+        synchronized (room) {
+            room.notifyAll();
+        }
+        return true;
+    }
+
+    private void saveNow(List<T> saves) {
+        if (saves.isEmpty()) {
+            return;
+        }
+        // Objects that could not be saved are marked so the next save tries again
+        handler.saveObjects(saves).forEach(failed -> {
+            if (failed instanceof DataObject) {
+                ((DataObject)failed).setDirty(true);
+            }
+        });
+        saves.clear();
+    }
+
+    private void deleteNow(T instance) {
+        try {
+            handler.deleteObject(instance);
+        } catch (Exception e) {
+            logger.severe(() -> "Could not delete object from database! Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package us.tastybento.bskyblock.database.flatfile;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.tastybento.bskyblock.Constants;
+import us.tastybento.bskyblock.Constants.GameType;
+import us.tastybento.bskyblock.api.configuration.ConfigComment;
+import us.tastybento.bskyblock.api.configuration.ConfigEntry;
+import us.tastybento.bskyblock.database.objects.adapters.Adapter;
+import us.tastybento.bskyblock.database.objects.adapters.AdapterInterface;
+
+/**
+ * The fields of a class that are stored in flat files, with their getters, setters, storage paths,
+ * collection types and adapters. It is worked out once per class and used for every load and save.
+ *
+ * @author tastybento
+ *
+ */
+class FieldPlan {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<FieldPlan> PLANS = new ClassValue<FieldPlan>() {
+        @Override
+        protected FieldPlan computeValue(Class<?> type) {
+            return new FieldPlan(type);
+        }
+    };
+
+    /**
+     * What kind of value a field holds
+     */
+    enum Kind {
+        MAP,
+        SET,
+        LIST,
+        OTHER
+    }
+
+    /**
+     * One stored field
+     */
+    static class StoredField {
+        private final String storageLocation;
+        private final Class<?> type;
+        private final Kind kind;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        // Classes of the collection's type parameters. Maps have two, sets and lists one.
+        private final List<Class<?>> parameterTypes;
+        private final String comment;
+        private final Class<?> adapterClass;
+        private final AdapterInterface<?,?> adapter;
+        private final boolean uniqueId;
+
+        private StoredField(Class<?> dataObject, Field field, String storageLocation) throws IntrospectionException, IllegalAccessException, ClassNotFoundException {
+            this.storageLocation = storageLocation;
+            PropertyDescriptor propertyDescriptor = new PropertyDescriptor(field.getName(), dataObject);
+            Method readMethod = propertyDescriptor.getReadMethod();
+            Method writeMethod = propertyDescriptor.getWriteMethod();
+            type = propertyDescriptor.getPropertyType();
+            getter = MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE);
+            setter = MethodHandles.publicLookup().unreflect(writeMethod).asType(SETTER_TYPE);
+            uniqueId = readMethod.getName().equals("getUniqueId");
+            if (Map.class.isAssignableFrom(type)) {
+                kind = Kind.MAP;
+            } else if (Set.class.isAssignableFrom(type)) {
+                kind = Kind.SET;
+            } else if (List.class.isAssignableFrom(type)) {
+                kind = Kind.LIST;
+            } else {
+                kind = Kind.OTHER;
+            }
+            List<Class<?>> parameters = new ArrayList<>();
+            if (kind != Kind.OTHER) {
+                for (Type parameter : writeMethod.getGenericParameterTypes()) {
+                    if (parameter instanceof ParameterizedType) {
+                        for (Type argument : ((ParameterizedType)parameter).getActualTypeArguments()) {
+                            parameters.add(toClass(argument));
+                        }
+                    }
+                }
+            }
+            parameterTypes = Collections.unmodifiableList(parameters);
+            ConfigComment configComment = field.getAnnotation(ConfigComment.class);
+            comment = configComment == null ? null : configComment.value();
+            Adapter adapterNotation = field.getAnnotation(Adapter.class);
+            AdapterInterface<?,?> adapterInstance = null;
+            if (adapterNotation != null && AdapterInterface.class.isAssignableFrom(adapterNotation.value())) {
+                adapterClass = adapterNotation.value();
+                try {
+                    adapterInstance = (AdapterInterface<?,?>)adapterClass.newInstance();
+                } catch (InstantiationException e) {
+                    // Reported when the field is loaded or saved
+                }
+            } else {
+                adapterClass = null;
+            }
+            adapter = adapterInstance;
+        }
+
+        private static Class<?> toClass(Type type) throws ClassNotFoundException {
+            if (type instanceof Class) {
+                return (Class<?>)type;
+            }
+            if (type instanceof ParameterizedType) {
+                return toClass(((ParameterizedType)type).getRawType());
+            }
+            return Class.forName(type.getTypeName());
+        }
+
+        /**
+         * @return where the field is stored in the file
+         */
+        String getStorageLocation() {
+            return storageLocation;
+        }
+
+        /**
+         * @return the property type
+         */
+        Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * @return what kind of value the field holds
+         */
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @param index - index of the type parameter
+         * @return the class of the collection's type parameter
+         */
+        Class<?> getParameterType(int index) {
+            return parameterTypes.get(index);
+        }
+
+        /**
+         * @return the comment to write above the field, or null if there is none
+         */
+        String getComment() {
+            return comment;
+        }
+
+        /**
+         * @return the adapter class, or null if the field has no adapter
+         */
+        Class<?> getAdapterClass() {
+            return adapterClass;
+        }
+
+        /**
+         * @return the adapter, or null if there is none or it could not be made
+         */
+        AdapterInterface<?,?> getAdapter() {
+            return adapter;
+        }
+
+        /**
+         * @return true if this is the uniqueId field
+         */
+        boolean isUniqueId() {
+            return uniqueId;
+        }
+
+        /**
+         * Gets the value of this field
+         * @param instance - object
+         * @return value
+         * @throws InvocationTargetException if the getter throws an exception
+         */
+        Object get(Object instance) throws InvocationTargetException {
+            try {
+                return (Object)getter.invokeExact(instance);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * Sets the value of this field
+         * @param instance - object
+         * @param value - value
+         * @throws InvocationTargetException if the setter throws an exception
+         */
+        void set(Object instance, Object value) throws InvocationTargetException {
+            try {
+                setter.invokeExact(instance, value);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    private final List<StoredField> fields;
+    private final StoredField uniqueIdField;
+    private final Exception error;
+
+    private FieldPlan(Class<?> dataObject) {
+        List<StoredField> list = new ArrayList<>();
+        StoredField idField = null;
+        Exception problem = null;
+        try {
+            for (Field field : dataObject.getDeclaredFields()) {
+                // Static and transient fields are not stored
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                    continue;
+                }
+                String storageLocation = field.getName();
+                // Check if there is an annotation on the field
+                ConfigEntry configEntry = field.getAnnotation(ConfigEntry.class);
+                if (configEntry != null) {
+                    if (!configEntry.specificTo().equals(GameType.BOTH) && !configEntry.specificTo().equals(Constants.GAMETYPE)) {
+                        continue;
+                    }
+                    if (!configEntry.path().isEmpty()) {
+                        storageLocation = configEntry.path();
+                    }
+                }
+                StoredField storedField = new StoredField(dataObject, field, storageLocation);
+                if (storedField.isUniqueId()) {
+                    idField = storedField;
+                }
+                list.add(storedField);
+            }
+        } catch (IntrospectionException | IllegalAccessException | ClassNotFoundException e) {
+            problem = e;
+        }
+        fields = Collections.unmodifiableList(list);
+        uniqueIdField = idField;
+        error = problem;
+    }
+
+    /**
+     * Gets the plan for this class. It is made the first time it is asked for.
+     * @param dataObject - class
+     * @return plan
+     * @throws IntrospectionException if a field has no getter or setter
+     * @throws IllegalAccessException if a getter or setter is not public
+     * @throws ClassNotFoundException if a collection type parameter cannot be found
+     */
+    static FieldPlan of(Class<?> dataObject) throws IntrospectionException, IllegalAccessException, ClassNotFoundException {
+        FieldPlan plan = PLANS.get(dataObject);
+        if (plan.error instanceof IntrospectionException) {
+            throw (IntrospectionException)plan.error;
+        }
+        if (plan.error instanceof IllegalAccessException) {
+            throw (IllegalAccessException)plan.error;
+        }
+        if (plan.error instanceof ClassNotFoundException) {
+            throw (ClassNotFoundException)plan.error;
+        }
+        return plan;
+    }
+
+    /**
+     * @return the stored fields in declaration order
+     */
+    List<StoredField> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the uniqueId field, or null if there is none
+     */
+    StoredField getUniqueIdField() {
+        return uniqueIdField;
+    }
+}
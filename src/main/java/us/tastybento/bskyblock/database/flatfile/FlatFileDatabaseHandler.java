@@ -1,23 +1,26 @@
 package us.tastybento.bskyblock.database.flatfile;
 
 import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -25,15 +28,12 @@ import org.bukkit.configuration.MemorySection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
-import us.tastybento.bskyblock.Constants;
-import us.tastybento.bskyblock.Constants.GameType;
-import us.tastybento.bskyblock.api.configuration.ConfigComment;
-import us.tastybento.bskyblock.api.configuration.ConfigEntry;
+import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.api.configuration.StoreAt;
 import us.tastybento.bskyblock.database.AbstractDatabaseHandler;
 import us.tastybento.bskyblock.database.DatabaseConnecter;
-import us.tastybento.bskyblock.database.objects.adapters.Adapter;
-import us.tastybento.bskyblock.database.objects.adapters.AdapterInterface;
+import us.tastybento.bskyblock.database.flatfile.FieldPlan.Kind;
+import us.tastybento.bskyblock.database.flatfile.FieldPlan.StoredField;
 import us.tastybento.bskyblock.util.Util;
 
 /**
@@ -81,7 +81,6 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
      */
     @Override
     public List<T> loadObjects() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, IntrospectionException {
-        List<T> list = new ArrayList<>();
         FilenameFilter ymlFilter = (dir, name) ->  name.toLowerCase().endsWith(".yml");
         String path = dataObject.getSimpleName();
         StoreAt storeAt = dataObject.getAnnotation(StoreAt.class);
@@ -94,17 +93,106 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
             // Nothing there...
             tableFolder.mkdirs();
         }
-        for (File file: tableFolder.listFiles(ymlFilter)) {
-            String fileName = file.getName();
-            if (storeAt != null) {
-                fileName = storeAt.filename();
+        File[] files = tableFolder.listFiles(ymlFilter);
+        // Files that cannot be loaded are reported and skipped
+        AtomicInteger failures = new AtomicInteger();
+        List<T> list;
+        int threads = getLoadThreads();
+        if (threads > 1 && files.length > 1) {
+            list = loadInParallel(files, storeAt, threads, failures);
+        } else {
+            list = new ArrayList<>();
+            for (File file: files) {
+                T object = loadFile(file, storeAt, failures);
+                if (object != null) {
+                    list.add(object);
+                }
             }
-            YamlConfiguration config = databaseConnecter.loadYamlFile(DATABASE_FOLDER_NAME + File.separator + dataObject.getSimpleName(), fileName);
-            list.add(createObject(config));
+        }
+        if (failures.get() > 0) {
+            plugin.getLogger().severe(() -> failures.get() + " of " + files.length + " " + dataObject.getSimpleName() + " files could not be loaded");
         }
         return list;
     }
 
+    /**
+     * Objects are saved in files named after their unique id, so the ids are read from the file names
+     */
+    @Override
+    public Set<String> loadUniqueIds() throws InstantiationException, IllegalAccessException, InvocationTargetException, ClassNotFoundException, IntrospectionException {
+        if (dataObject.getAnnotation(StoreAt.class) != null) {
+            return super.loadUniqueIds();
+        }
+        File tableFolder = new File(new File(plugin.getDataFolder(), DATABASE_FOLDER_NAME), dataObject.getSimpleName());
+        File[] files = tableFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".yml"));
+        Set<String> ids = new HashSet<>();
+        if (files != null) {
+            for (File file : files) {
+                ids.add(file.getName().substring(0, file.getName().length() - ".yml".length()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return number of threads to load objects with, from the settings
+     */
+    private int getLoadThreads() {
+        if (!(plugin instanceof BSkyBlock) || ((BSkyBlock)plugin).getSettings() == null) {
+            return 1;
+        }
+        int threads = ((BSkyBlock)plugin).getSettings().getDatabaseLoadThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Reads, parses and makes the objects in a pool of threads.
+     * Files that cannot be loaded are reported and skipped.
+     * @param files - files to load
+     * @param storeAt - where the objects are stored, or null
+     * @param threads - number of threads
+     * @param failures - counts the files that could not be loaded
+     * @return list of objects, in the same order as the files
+     */
+    private List<T> loadInParallel(File[] files, StoreAt storeAt, int threads, AtomicInteger failures) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> Arrays.stream(files).parallel()
+                    .map(file -> loadFile(file, storeAt, failures))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + dataObject.getSimpleName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw new IllegalStateException("Could not load " + dataObject.getSimpleName(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Loads one file, reporting it if it cannot be loaded
+     * @param file - file
+     * @param storeAt - where the objects are stored, or null
+     * @param failures - counts the files that could not be loaded
+     * @return the object, or null if the file could not be loaded
+     */
+    private T loadFile(File file, StoreAt storeAt, AtomicInteger failures) {
+        String fileName = storeAt != null ? storeAt.filename() : file.getName();
+        try {
+            YamlConfiguration config = databaseConnecter.loadYamlFile(DATABASE_FOLDER_NAME + File.separator + dataObject.getSimpleName(), fileName);
+            return createObject(config);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            plugin.getLogger().severe(() -> "Could not load " + dataObject.getSimpleName() + " " + fileName + " " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      *
      * Creates a list of <T>s filled with values from the provided ResultSet
@@ -116,32 +204,18 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
     private T createObject(YamlConfiguration config) throws InstantiationException, IllegalAccessException, IntrospectionException, InvocationTargetException, ClassNotFoundException {
         T instance = dataObject.newInstance();
 
-        // Run through all the fields in the object
-        for (Field field : dataObject.getDeclaredFields()) {
-            // Gets the getter and setters for this field
-            PropertyDescriptor propertyDescriptor = new PropertyDescriptor(field.getName(), dataObject);
-            // Get the write method
-            Method method = propertyDescriptor.getWriteMethod();
-            String storageLocation = field.getName();
-            // Check if there is an annotation on the field
-            ConfigEntry configEntry = field.getAnnotation(ConfigEntry.class);
-            // If there is a config annotation then do something
-            if (configEntry != null) {
-                if (!configEntry.path().isEmpty()) {
-                    storageLocation = configEntry.path();
-                }
-                if (!configEntry.specificTo().equals(GameType.BOTH) && !configEntry.specificTo().equals(Constants.GAMETYPE)) {
-                    continue;
-                }
-                // TODO: Add handling of other ConfigEntry elements
-            }
-            Adapter adapterNotation = field.getAnnotation(Adapter.class);
-            if (adapterNotation != null && AdapterInterface.class.isAssignableFrom(adapterNotation.value())) {
+        // Run through all the stored fields in the object
+        for (StoredField field : FieldPlan.of(dataObject).getFields()) {
+            String storageLocation = field.getStorageLocation();
+            if (field.getAdapterClass() != null) {
                 // A conversion adapter has been defined
+                if (field.getAdapter() == null) {
+                    throw new InstantiationException("Could not instatiate adapter " + field.getAdapterClass().getName());
+                }
                 Object value = config.get(storageLocation);
-                method.invoke(instance, ((AdapterInterface<?,?>)adapterNotation.value().newInstance()).serialize(value));
+                field.set(instance, field.getAdapter().serialize(value));
                 if (value != null && !value.getClass().equals(MemorySection.class)) {
-                    method.invoke(instance, deserialize(value,propertyDescriptor.getPropertyType()));
+                    field.set(instance, deserialize(value, field.getType()));
                 }
                 // We are done here
                 continue;
@@ -151,63 +225,50 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
             if (config.contains(storageLocation)) {
                 // Check for null values
                 if (config.get(storageLocation) == null) {
-                    method.invoke(instance, (Object)null);
+                    field.set(instance, null);
                     continue;
                 }
-                // Handle storage of maps. Check if this type is a Map
-                if (Map.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-                    // Note that we have no idea what type this is
-                    List<Type> collectionTypes = Util.getCollectionParameterTypes(method);
-                    // collectionTypes should be 2 long
-                    Type keyType = collectionTypes.get(0);
-                    Type valueType = collectionTypes.get(1);
+                switch (field.getKind()) {
+                case MAP:
                     // TODO: this may not work with all keys. Further serialization may be required.
-                    Map<Object,Object> value = new HashMap<>();
+                    Map<Object,Object> map = new HashMap<>();
                     if (config.getConfigurationSection(storageLocation) != null) {
                         for (String key : config.getConfigurationSection(storageLocation).getKeys(false)) {
                             // Keys cannot be null - skip if they exist
-                            Object mapKey = deserialize(key,Class.forName(keyType.getTypeName()));
+                            Object mapKey = deserialize(key, field.getParameterType(0));
                             if (mapKey == null) {
                                 continue;
                             }
                             // Map values can be null - it is allowed here
-                            Object mapValue = deserialize(config.get(storageLocation + "." + key), Class.forName(valueType.getTypeName()));
-                            value.put(mapKey, mapValue);
+                            Object mapValue = deserialize(config.get(storageLocation + "." + key), field.getParameterType(1));
+                            map.put(mapKey, mapValue);
                         }
                     }
-                    method.invoke(instance, value);
-                } else if (Set.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-                    // Loop through the collection resultset
-                    // Note that we have no idea what type this is
-                    List<Type> collectionTypes = Util.getCollectionParameterTypes(method);
-                    // collectionTypes should be only 1 long
-                    Type setType = collectionTypes.get(0);
-                    Set<Object> value = new HashSet<>();
+                    field.set(instance, map);
+                    break;
+                case SET:
+                    Set<Object> set = new HashSet<>();
                     for (Object listValue: config.getList(storageLocation)) {
-                        value.add(deserialize(listValue,Class.forName(setType.getTypeName())));
+                        set.add(deserialize(listValue, field.getParameterType(0)));
                     }
-
                     // TODO: this may not work with all keys. Further serialization may be required.
-                    method.invoke(instance, value);
-                } else if (List.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-                    // Loop through the collection resultset
-                    // Note that we have no idea what type this is
-                    List<Type> collectionTypes = Util.getCollectionParameterTypes(method);
-                    // collectionTypes should be only 1 long
-                    Type setType = collectionTypes.get(0);
-                    List<Object> value = new ArrayList<>();
+                    field.set(instance, set);
+                    break;
+                case LIST:
+                    List<Object> list = new ArrayList<>();
                     if (config.getList(storageLocation) != null) {
                         for (Object listValue: config.getList(storageLocation)) {
-                            value.add(deserialize(listValue,Class.forName(setType.getTypeName())));
+                            list.add(deserialize(listValue, field.getParameterType(0)));
                         }
                     }
                     // TODO: this may not work with all keys. Further serialization may be required.
-                    method.invoke(instance, value);
-                } else {
+                    field.set(instance, list);
+                    break;
+                default:
                     // Not a collection
                     Object value = config.get(storageLocation);
                     if (value != null && !value.getClass().equals(MemorySection.class)) {
-                        method.invoke(instance, deserialize(value,propertyDescriptor.getPropertyType()));
+                        field.set(instance, deserialize(value, field.getType()));
                     }
                 }
             }
@@ -244,97 +305,82 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
             }
         }
 
-        // Run through all the fields in the class that is being stored. EVERY field must have a get and set method
-        fields:
-            for (Field field : dataObject.getDeclaredFields()) {
-
-                // Get the property descriptor for this field
-                PropertyDescriptor propertyDescriptor = new PropertyDescriptor(field.getName(), dataObject);
-                // Get the read method, i.e., getXXXX();
-                Method method = propertyDescriptor.getReadMethod();
-                // Invoke the read method to get the value. We have no idea what type of value it is.
-                Object value = method.invoke(instance);
-                String storageLocation = field.getName();
-                // Check if there is an annotation on the field
-                ConfigEntry configEntry = field.getAnnotation(ConfigEntry.class);
-                // If there is a config path annotation then do something
-                if (configEntry != null) {
-                    if (!configEntry.specificTo().equals(GameType.BOTH) && !configEntry.specificTo().equals(Constants.GAMETYPE)) {
-                        continue fields;
-                    }
-                    if (!configEntry.path().isEmpty()) {
-                        storageLocation = configEntry.path();
-                    }
-                    // TODO: add in game-specific saving
+        FieldPlan plan;
+        try {
+            plan = FieldPlan.of(dataObject);
+        } catch (ClassNotFoundException e) {
+            throw new IntrospectionException(e.getMessage());
+        }
+        // Run through all the stored fields in the class. EVERY field must have a get and set method
+        for (StoredField field : plan.getFields()) {
+            // Get the value. We have no idea what type of value it is.
+            Object value = field.get(instance);
+            String storageLocation = field.getStorageLocation();
 
+            // Comments
+            if (field.getComment() != null) {
+                // Create a random placeholder string
+                String random = "comment-" + UUID.randomUUID().toString();
+                // Store placeholder
+                config.set(random, " ");
+                // Create comment
+                yamlComments.put(random, "# " + field.getComment());
+            }
+
+            // Adapter
+            if (field.getAdapterClass() != null) {
+                // A conversion adapter has been defined
+                if (field.getAdapter() == null) {
+                    plugin.getLogger().severe(() -> "Could not instatiate adapter " + field.getAdapterClass().getName());
+                } else {
+                    config.set(storageLocation, field.getAdapter().deserialize(value));
                 }
-                
-                // Comments          
-                ConfigComment comment = field.getAnnotation(ConfigComment.class);
-                if (comment != null) {
-                    // Create a random placeholder string
-                    String random = "comment-" + UUID.randomUUID().toString();
-                    // Store placeholder
-                    config.set(random, " ");
-                    // Create comment
-                    yamlComments.put(random, "# " + comment.value());
-                }
+                // We are done here
+                continue;
+            }
 
-                // Adapter
-                Adapter adapterNotation = field.getAnnotation(Adapter.class);
-                if (adapterNotation != null && AdapterInterface.class.isAssignableFrom(adapterNotation.value())) {
-                    // A conversion adapter has been defined
-                    try {
-                        config.set(storageLocation, ((AdapterInterface<?,?>)adapterNotation.value().newInstance()).deserialize(value));
-                    } catch (InstantiationException e) {
-                        plugin.getLogger().severe(() -> "Could not instatiate adapter " + adapterNotation.value().getName() + " " + e.getMessage());
-                    }
-                    // We are done here
-                    continue fields;
+            // Depending on the vale type, it'll need serializing differently
+            // Check if this field is the mandatory UniqueId field. This is used to identify this instantiation of the class
+            if (field.isUniqueId()) {
+                // If the object does not have a unique name assigned to it already, one is created at random
+                String id = (String)value;
+                if (value == null || id.isEmpty()) {
+                    id = databaseConnecter.getUniqueId(dataObject.getSimpleName());
+                    // Set it in the class so that it will be used next time
+                    field.set(instance, id);
                 }
-                
-                // Depending on the vale type, it'll need serializing differently
-                // Check if this field is the mandatory UniqueId field. This is used to identify this instantiation of the class
-                if (method.getName().equals("getUniqueId")) {
-                    // If the object does not have a unique name assigned to it already, one is created at random
-                    String id = (String)value;
-                    if (value == null || id.isEmpty()) {
-                        id = databaseConnecter.getUniqueId(dataObject.getSimpleName());
-                        // Set it in the class so that it will be used next time
-                        propertyDescriptor.getWriteMethod().invoke(instance, id);
-                    }
-                    // Save the name for when the file is saved
-                    if (filename.isEmpty()) {
-                        filename = id;
-                    }
+                // Save the name for when the file is saved
+                if (filename.isEmpty()) {
+                    filename = id;
                 }
-                // Collections need special serialization
-                if (Map.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-                    // Maps need to have keys serialized
-                    if (value != null) {
-                        Map<Object, Object> result = new HashMap<>();
-                        for (Entry<Object, Object> object : ((Map<Object,Object>)value).entrySet()) {
-                            // Serialize all key and values
-                            result.put(serialize(object.getKey()), serialize(object.getValue()));
-                        }
-                        // Save the list in the config file
-                        config.set(storageLocation, result);
+            }
+            // Collections need special serialization
+            if (field.getKind() == Kind.MAP) {
+                // Maps need to have keys serialized
+                if (value != null) {
+                    Map<Object, Object> result = new HashMap<>();
+                    for (Entry<Object, Object> object : ((Map<Object,Object>)value).entrySet()) {
+                        // Serialize all key and values
+                        result.put(serialize(object.getKey()), serialize(object.getValue()));
                     }
-                } else if (Set.class.isAssignableFrom(propertyDescriptor.getPropertyType())) {
-                    // Sets need to be serialized as string lists
-                    if (value != null) {
-                        List<Object> list = new ArrayList<>();
-                        for (Object object : (Set<Object>)value) {
-                            list.add(serialize(object));
-                        }
-                        // Save the list in the config file
-                        config.set(storageLocation, list);
+                    // Save the list in the config file
+                    config.set(storageLocation, result);
+                }
+            } else if (field.getKind() == Kind.SET) {
+                // Sets need to be serialized as string lists
+                if (value != null) {
+                    List<Object> list = new ArrayList<>();
+                    for (Object object : (Set<Object>)value) {
+                        list.add(serialize(object));
                     }
-                } else {
-                    // For all other data that doesn't need special serialization
-                    config.set(storageLocation, serialize(value));
+                    // Save the list in the config file
+                    config.set(storageLocation, list);
                 }
+            } else {
+                // For all other data that doesn't need special serialization
+                config.set(storageLocation, serialize(value));
             }
+        }
         if (filename.isEmpty()) {
             throw new IllegalArgumentException("No uniqueId in class");
         }
@@ -438,9 +484,16 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
     @Override
     public void deleteObject(T instance) throws IllegalAccessException, InvocationTargetException, IntrospectionException {
         // The file name of the Yaml file.
-        PropertyDescriptor propertyDescriptor = new PropertyDescriptor("uniqueId", dataObject);
-        Method method = propertyDescriptor.getReadMethod();
-        String fileName = (String) method.invoke(instance);
+        StoredField uniqueId;
+        try {
+            uniqueId = FieldPlan.of(dataObject).getUniqueIdField();
+        } catch (ClassNotFoundException e) {
+            throw new IntrospectionException(e.getMessage());
+        }
+        if (uniqueId == null) {
+            throw new IntrospectionException("No uniqueId in class");
+        }
+        String fileName = (String) uniqueId.get(instance);
         if (!fileName.endsWith(".yml")) {
             fileName = fileName + ".yml";
         }
@@ -450,7 +503,8 @@ public class FlatFileDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
 
             File file = new File(tableFolder, fileName);
             try {
-                Files.delete(file.toPath());
+                // It may never have been written, e.g., if it was deleted before its first save
+                Files.deleteIfExists(file.toPath());
             } catch (IOException e) {
                 plugin.getLogger().severe(() -> "Could not delete yaml database object! " + file.getName() + " - " + e.getMessage());
             }
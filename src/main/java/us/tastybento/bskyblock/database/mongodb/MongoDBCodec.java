@@ -0,0 +1,196 @@
+package us.tastybento.bskyblock.database.mongodb;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Writes data objects straight to BSON and reads them straight back, using the same Gson type adapters
+ * as before so documents that are already stored still load. The objects are never written out as JSON text.
+ * The uniqueId field is stored as the document's _id. Only the top level field is renamed, so values
+ * and nested fields called uniqueId are left alone.
+ *
+ * @author tastybento
+ *
+ * @param <T> the type of object stored
+ */
+class MongoDBCodec<T> implements Codec<T> {
+
+    static final String UNIQUEID = "uniqueId";
+    static final String MONGO_ID = "_id";
+
+    private final Class<T> type;
+    private final Gson gson;
+    private final Logger logger;
+
+    /**
+     * @param type - class of the objects
+     * @param gson - Gson with the type adapters registered
+     * @param logger - logger for documents that cannot be loaded
+     */
+    MongoDBCodec(Class<T> type, Gson gson, Logger logger) {
+        this.type = type;
+        this.gson = gson;
+        this.logger = logger;
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        JsonObject object = gson.toJsonTree(value).getAsJsonObject();
+        writer.writeStartDocument();
+        // The id goes first, as the server keeps it first anyway
+        JsonElement id = object.get(UNIQUEID);
+        if (id != null) {
+            writer.writeName(MONGO_ID);
+            write(writer, id);
+        }
+        for (Entry<String, JsonElement> entry : object.entrySet()) {
+            if (!entry.getKey().equals(UNIQUEID)) {
+                writer.writeName(entry.getKey());
+                write(writer, entry.getValue());
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    private void write(BsonWriter writer, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            writer.writeNull();
+        } else if (element.isJsonObject()) {
+            writer.writeStartDocument();
+            for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                writer.writeName(entry.getKey());
+                write(writer, entry.getValue());
+            }
+            writer.writeEndDocument();
+        } else if (element.isJsonArray()) {
+            writer.writeStartArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                write(writer, item);
+            }
+            writer.writeEndArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                writer.writeBoolean(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                writeNumber(writer, primitive.getAsNumber());
+            } else {
+                writer.writeString(primitive.getAsString());
+            }
+        }
+    }
+
+    /**
+     * Writes whole numbers as 32 bit integers if they fit and 64 bit integers if not, and anything else as a double.
+     * This is how the numbers were stored when objects were written as JSON text.
+     */
+    private void writeNumber(BsonWriter writer, Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            writer.writeInt32(number.intValue());
+        } else if (number instanceof Long) {
+            writeWhole(writer, BigInteger.valueOf(number.longValue()));
+        } else if (number instanceof Double || number instanceof Float) {
+            writer.writeDouble(number.doubleValue());
+        } else {
+            // Other numbers, e.g., BigDecimal
+            try {
+                writeWhole(writer, new BigDecimal(number.toString()).toBigIntegerExact());
+            } catch (ArithmeticException | NumberFormatException e) {
+                writer.writeDouble(number.doubleValue());
+            }
+        }
+    }
+
+    private void writeWhole(BsonWriter writer, BigInteger whole) {
+        if (whole.bitLength() < 32) {
+            writer.writeInt32(whole.intValue());
+        } else if (whole.bitLength() < 64) {
+            writer.writeInt64(whole.longValue());
+        } else {
+            writer.writeDouble(whole.doubleValue());
+        }
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        JsonObject object = new JsonObject();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            object.add(name.equals(MONGO_ID) ? UNIQUEID : name, read(reader));
+        }
+        reader.readEndDocument();
+        try {
+            return gson.fromJson(object, type);
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            logger.severe(() -> "Could not load " + type.getSimpleName() + " " + object.get(UNIQUEID) + " " + e.getMessage());
+            return null;
+        }
+    }
+
+    private JsonElement read(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+        case DOCUMENT:
+            JsonObject object = new JsonObject();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                object.add(reader.readName(), read(reader));
+            }
+            reader.readEndDocument();
+            return object;
+        case ARRAY:
+            JsonArray array = new JsonArray();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                array.add(read(reader));
+            }
+            reader.readEndArray();
+            return array;
+        case STRING:
+            return new JsonPrimitive(reader.readString());
+        case BOOLEAN:
+            return new JsonPrimitive(reader.readBoolean());
+        case INT32:
+            return new JsonPrimitive(reader.readInt32());
+        case INT64:
+            return new JsonPrimitive(reader.readInt64());
+        case DOUBLE:
+            return new JsonPrimitive(reader.readDouble());
+        case DECIMAL128:
+            return new JsonPrimitive(reader.readDecimal128().bigDecimalValue());
+        case DATE_TIME:
+            return new JsonPrimitive(reader.readDateTime());
+        case OBJECT_ID:
+            return new JsonPrimitive(reader.readObjectId().toHexString());
+        case NULL:
+            reader.readNull();
+            return JsonNull.INSTANCE;
+        default:
+            // Nothing BSkyBlock stores
+            reader.skipValue();
+            return JsonNull.INSTANCE;
+        }
+    }
+}
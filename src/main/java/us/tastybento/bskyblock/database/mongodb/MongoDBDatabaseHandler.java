@@ -1,23 +1,31 @@
 package us.tastybento.bskyblock.database.mongodb;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.bson.Document;
-import org.bson.conversions.Bson;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.potion.PotionEffectType;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
-import com.mongodb.client.model.FindOneAndReplaceOptions;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
-import com.mongodb.util.JSON;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.api.flags.Flag;
@@ -32,22 +40,25 @@ import us.tastybento.bskyblock.database.objects.DataObject;
 /**
  *
  * Class that inserts a <T> into the corresponding database-table.
+ * Objects are converted to and from BSON documents by a {@link MongoDBCodec}.
  *
  * @author tastybento
  *
  * @param <T>
  */
-@SuppressWarnings("deprecation")
 public class MongoDBDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
 
-    private static final String UNIQUEID = "uniqueId";
-    private static final String MONGO_ID = "_id";
+    private static final String UNIQUEID = MongoDBCodec.UNIQUEID;
+    private static final String MONGO_ID = MongoDBCodec.MONGO_ID;
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
 
     /**
      * Connection to the database
      */
     private MongoDatabase database = null;
     private MongoCollection<Document> collection;
+    // The same collection, read and written as objects by the codec
+    private MongoCollection<T> objects;
     private DatabaseConnecter dbConnecter;
 
     private BSkyBlock bskyblock;
@@ -65,8 +76,11 @@ public class MongoDBDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
         this.dbConnecter = dbConnecter;
         database = (MongoDatabase)dbConnecter.createConnection();
         collection = database.getCollection(dataObject.getCanonicalName());
+        MongoDBCodec<T> codec = new MongoDBCodec<>(dataObject, getGSON(), plugin.getLogger());
+        objects = collection.withDocumentClass(dataObject)
+                .withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec), collection.getCodecRegistry()));
         IndexOptions indexOptions = new IndexOptions().unique(true);
-        collection.createIndex(Indexes.text(UNIQUEID), indexOptions);       
+        collection.createIndex(Indexes.text(UNIQUEID), indexOptions);
     }
 
     // Gets the GSON builder
@@ -89,27 +103,43 @@ public class MongoDBDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
     @Override
     public List<T> loadObjects() {
         List<T> list = new ArrayList<>();
-        Gson gson = getGSON();
-        MongoCursor<Document> it = collection.find(new Document()).iterator();
-        while (it.hasNext()) {
-            // The deprecated serialize option does not have a viable alternative without involving a huge amount of custom code
-            String json = JSON.serialize(it.next());
-            json = json.replaceFirst(MONGO_ID, UNIQUEID);
-            list.add(gson.fromJson(json, dataObject));
-        }
+        loadObjects(list::add);
         return list;
     }
 
+    /**
+     * Reads the documents with a cursor, so only the driver's current batch is held in memory.
+     * Documents that cannot be loaded are reported and skipped.
+     */
+    @Override
+    public int loadObjects(Consumer<T> consumer) {
+        int count = 0;
+        try (MongoCursor<T> it = objects.find().iterator()) {
+            while (it.hasNext()) {
+                T object = it.next();
+                if (object != null) {
+                    consumer.accept(object);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     @Override
-    public T loadObject(String uniqueId) { 
-        Document doc = collection.find(new Document(MONGO_ID, uniqueId)).limit(1).first();
-        if (doc != null) {
-            Gson gson = getGSON();
-            String json = JSON.serialize(doc).replaceFirst(MONGO_ID, UNIQUEID);
-            // load single object
-            return gson.fromJson(json, dataObject);
+    public Set<String> loadUniqueIds() {
+        Set<String> ids = new HashSet<>();
+        try (MongoCursor<Document> it = collection.find().projection(Projections.include(MONGO_ID)).iterator()) {
+            while (it.hasNext()) {
+                ids.add(String.valueOf(it.next().get(MONGO_ID)));
+            }
         }
-        return null;
+        return ids;
+    }
+
+    @Override
+    public T loadObject(String uniqueId) {
+        return objects.find(Filters.eq(MONGO_ID, uniqueId)).limit(1).first();
     }
 
     @Override
@@ -118,25 +148,49 @@ public class MongoDBDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
             plugin.getLogger().severe(() -> "This class is not a DataObject: " + instance.getClass().getName());
             return;
         }
-        DataObject dataObj = (DataObject)instance;
         try {
-            Gson gson = getGSON();
-            String toStore = gson.toJson(instance);
-            // Change uniqueId to _id
-            toStore = toStore.replaceFirst(UNIQUEID, MONGO_ID);
-            // This parses JSON to a Mongo Document
-            Document document = Document.parse(toStore);
-            // Filter based on the id
-            Bson filter = new Document(MONGO_ID, dataObj.getUniqueId());
-            // Set the options to upsert (update or insert if doc is not there)
-            FindOneAndReplaceOptions options = new FindOneAndReplaceOptions().upsert(true);
-            // Do the deed
-            collection.findOneAndReplace(filter, document, options);
+            // Upsert (update or insert if doc is not there), filtered on the id
+            objects.replaceOne(Filters.eq(MONGO_ID, ((DataObject)instance).getUniqueId()), instance, UPSERT);
         } catch (Exception e) {
             plugin.getLogger().severe(() -> "Could not save object " + instance.getClass().getName() + " " + e.getMessage());
         }
     }
 
+    /**
+     * Saves the objects with one unordered bulk write of upserts.
+     * Objects that the server rejects are returned. If the write fails completely, all of them are.
+     */
+    @Override
+    public List<T> saveObjects(List<T> instances) {
+        List<T> failed = new ArrayList<>();
+        List<T> batch = new ArrayList<>();
+        List<ReplaceOneModel<T>> models = new ArrayList<>();
+        for (T instance : instances) {
+            if (!(instance instanceof DataObject)) {
+                plugin.getLogger().severe(() -> "This class is not a DataObject: " + instance.getClass().getName());
+                failed.add(instance);
+                continue;
+            }
+            batch.add(instance);
+            models.add(new ReplaceOneModel<>(Filters.eq(MONGO_ID, ((DataObject)instance).getUniqueId()), instance, UPSERT));
+        }
+        if (models.isEmpty()) {
+            return failed;
+        }
+        try {
+            objects.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failed.add(batch.get(error.getIndex()));
+            }
+            plugin.getLogger().severe(() -> "Could not save " + e.getWriteErrors().size() + " objects of " + dataObject.getName() + " " + e.getMessage());
+        } catch (Exception e) {
+            plugin.getLogger().severe(() -> "Could not save " + batch.size() + " objects of " + dataObject.getName() + " " + e.getMessage());
+            failed.addAll(batch);
+        }
+        return failed;
+    }
+
     @Override
     public void deleteObject(T instance) {
         if (!(instance instanceof DataObject)) {
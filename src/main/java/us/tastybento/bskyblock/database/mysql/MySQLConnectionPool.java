@@ -0,0 +1,159 @@
+package us.tastybento.bskyblock.database.mysql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import us.tastybento.bskyblock.database.DatabaseConnecter;
+
+/**
+ * A small pool of connections for one table. Connections are opened when they are first needed,
+ * up to the size of the pool, and connections that are no longer valid are replaced.
+ * If all the connections are in use, callers wait for one to be returned.
+ *
+ * @author tastybento
+ *
+ */
+class MySQLConnectionPool {
+
+    /**
+     * Seconds to wait for the database to answer when checking an idle connection
+     */
+    private static final int VALID_TIMEOUT = 2;
+
+    private final DatabaseConnecter dbConnecter;
+    private final int size;
+    // Connections that are open and not in use
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    // Every connection that is open
+    private final List<Connection> open = new ArrayList<>();
+    // Slots reserved for connections that are being opened
+    private int opening;
+    private boolean closed;
+
+    /**
+     * @param dbConnecter - makes the connections
+     * @param size - most connections open at once. Values below 1 mean 1.
+     */
+    MySQLConnectionPool(DatabaseConnecter dbConnecter, int size) {
+        this.dbConnecter = dbConnecter;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Takes a connection from the pool. It must be given back with {@link #release(Connection)}.
+     * Connections are opened and checked without holding the pool's lock, so other callers are not held up.
+     * @return connection
+     * @throws SQLException if a connection cannot be made, or the pool is closed
+     */
+    Connection take() throws SQLException {
+        while (true) {
+            Connection connection = reserve();
+            if (connection == null) {
+                return connect();
+            }
+            if (connection.isValid(VALID_TIMEOUT)) {
+                return connection;
+            }
+            // Stale, e.g., timed out on the server
+            synchronized (this) {
+                open.remove(connection);
+                notifyAll();
+            }
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Takes an idle connection, or reserves a slot for a new one, waiting until one of them can be done
+     * @return idle connection, or null if a slot was reserved and a connection must be opened
+     * @throws SQLException if the pool is closed, or the thread is interrupted while waiting
+     */
+    private synchronized Connection reserve() throws SQLException {
+        while (true) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            Connection connection = idle.pollFirst();
+            if (connection != null) {
+                return connection;
+            }
+            if (open.size() + opening < size) {
+                opening++;
+                return null;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+        }
+    }
+
+    /**
+     * Opens a connection in a slot reserved by {@link #reserve()}
+     * @return connection
+     * @throws SQLException if a connection cannot be made, or the pool was closed while connecting
+     */
+    private Connection connect() throws SQLException {
+        Connection connection = null;
+        boolean added = false;
+        try {
+            connection = (Connection)dbConnecter.createConnection();
+        } finally {
+            synchronized (this) {
+                opening--;
+                if (connection != null && !closed) {
+                    open.add(connection);
+                    added = true;
+                }
+                notifyAll();
+            }
+        }
+        if (connection == null) {
+            throw new SQLException("Could not connect to the database");
+        }
+        if (!added) {
+            closeQuietly(connection);
+            throw new SQLException("Connection pool is closed");
+        }
+        return connection;
+    }
+
+    /**
+     * Gives a connection back to the pool
+     * @param connection - connection from {@link #take()}
+     */
+    synchronized void release(Connection connection) {
+        if (closed) {
+            closeQuietly(connection);
+            return;
+        }
+        // Most recently used first, so idle connections that are not needed time out on the server
+        idle.addFirst(connection);
+        notifyAll();
+    }
+
+    /**
+     * Closes the connections that are not in use. Connections in use are closed when they are given back.
+     */
+    synchronized void close() {
+        closed = true;
+        idle.forEach(this::closeQuietly);
+        idle.clear();
+        open.clear();
+        notifyAll();
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Nothing more can be done with it
+        }
+    }
+}
@@ -16,7 +16,7 @@ public class MySQLDatabase extends BSBDbSetup{
                 plugin.getSettings().getDbName(),
                 plugin.getSettings().getDbUsername(),
                 plugin.getSettings().getDbPassword()
-                )));
+                ), plugin.getSettings().getDatabaseFetchSize()));
     }
 
 }
@@ -15,13 +15,21 @@ public class MySQLDatabaseConnecter implements DatabaseConnecter {
 
     private String connectionUrl;
     private DatabaseConnectionSettingsImpl dbSettings;
-    private Connection connection = null;
 
     /**
      * Class for MySQL database connections using the settings provided
      * @param dbSettings
      */
     public MySQLDatabaseConnecter(DatabaseConnectionSettingsImpl dbSettings) {
+        this(dbSettings, 0);
+    }
+
+    /**
+     * Class for MySQL database connections using the settings provided
+     * @param dbSettings
+     * @param fetchSize - rows read at a time when loading. If above 0, the server keeps a cursor so rows can be read in blocks.
+     */
+    public MySQLDatabaseConnecter(DatabaseConnectionSettingsImpl dbSettings, int fetchSize) {
         this.dbSettings = dbSettings;
         try {
             Class.forName("com.mysql.jdbc.Driver").newInstance();
@@ -29,17 +37,25 @@ public class MySQLDatabaseConnecter implements DatabaseConnecter {
             Bukkit.getLogger().severe("Could not instantiate JDBC driver! " + e.getMessage());
         }
         // jdbc:mysql://localhost:3306/Peoples?autoReconnect=true&useSSL=false
-        connectionUrl = "jdbc:mysql://" + dbSettings.getHost() + ":" + dbSettings.getPort() + "/" + dbSettings.getDatabaseName() + "?autoReconnect=true&useSSL=false&allowMultiQueries=true";
+        // rewriteBatchedStatements sends a batch of inserts as multi-row inserts
+        connectionUrl = "jdbc:mysql://" + dbSettings.getHost() + ":" + dbSettings.getPort() + "/" + dbSettings.getDatabaseName() + "?autoReconnect=true&useSSL=false&allowMultiQueries=true&rewriteBatchedStatements=true";
+        if (fetchSize > 0) {
+            connectionUrl += "&useCursorFetch=true";
+        }
     }
 
+    /**
+     * Makes a new connection. The caller owns it and must close it.
+     * @return the new connection or null if one could not be made
+     */
     @Override
     public Connection createConnection() {
         try {
-            connection = DriverManager.getConnection(connectionUrl, dbSettings.getUsername(), dbSettings.getPassword());
+            return DriverManager.getConnection(connectionUrl, dbSettings.getUsername(), dbSettings.getPassword());
         } catch (SQLException e) {
             Bukkit.getLogger().severe("Could not connect to the database! " + e.getMessage());
+            return null;
         }
-        return connection;
     }
 
     @Override
@@ -74,12 +90,6 @@ public class MySQLDatabaseConnecter implements DatabaseConnecter {
 
     @Override
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                Bukkit.getLogger().severe("Could not close MySQL database connection");
-            }
-        }
+        // Not used - connections are not shared, so each one is closed by whoever made it, e.g., the MySQLConnectionPool
     }
 }
@@ -1,13 +1,20 @@
 package us.tastybento.bskyblock.database.mysql;
 
 import java.lang.reflect.Method;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -37,11 +44,36 @@ import us.tastybento.bskyblock.database.objects.DataObject;
 public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
 
     /**
-     * Connection to the database
+     * Most rows sent to the database in one batch
      */
-    private Connection connection = null;
+    private static final int BATCH_SIZE = 1000;
 
-    private BSkyBlock bskyblock;
+    /**
+     * Most rows held in memory at once while loading
+     */
+    private static final int PARSE_CHUNK = 256;
+
+    /**
+     * Connections to the database
+     */
+    private final MySQLConnectionPool pool;
+
+    private final BSkyBlock bskyblock;
+
+    /**
+     * GSON with the adapters registered. It is thread safe, so it is made once.
+     */
+    private final Gson gson;
+
+    /**
+     * Inserts the object, or replaces it if it is already stored
+     */
+    private final String upsertSql;
+
+    /**
+     * Rows the driver reads from the database at a time when loading. 0 streams them one at a time.
+     */
+    private final int fetchSize;
 
     /**
      * Handles the connection to the database and creation of the initial database schema (tables) for
@@ -53,7 +85,11 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
     public MySQLDatabaseHandler(BSkyBlock plugin, Class<T> type, DatabaseConnecter dbConnecter) {
         super(plugin, type, dbConnecter);
         this.bskyblock = plugin;
-        connection = (Connection)dbConnecter.createConnection();
+        pool = new MySQLConnectionPool(dbConnecter, plugin.getSettings().getDatabasePoolSize());
+        gson = getGSON();
+        fetchSize = plugin.getSettings().getDatabaseFetchSize();
+        // The table name is the canonical name, so that add-ons can be sure of a unique table in the database
+        upsertSql = "INSERT INTO `" + dataObject.getCanonicalName() + "` (json) VALUES (?) ON DUPLICATE KEY UPDATE json = VALUES(json)";
         // Check if the table exists in the database and if not, create it
         createSchema();
     }
@@ -67,10 +103,22 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
         sql.append(dataObject.getCanonicalName());
         sql.append("` (json JSON, uniqueId VARCHAR(255) GENERATED ALWAYS AS (json->\"$.uniqueId\"), UNIQUE INDEX i (uniqueId) )");
         // Prepare and execute the database statements
-        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
-            pstmt.executeUpdate();
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+                pstmt.executeUpdate();
+            }
         } catch (SQLException e) {
             plugin.getLogger().severe(() -> "Problem trying to create schema for data object " + dataObject.getCanonicalName() + " " + e.getMessage());
+        } finally {
+            release(connection);
+        }
+    }
+
+    private void release(Connection connection) {
+        if (connection != null) {
+            pool.release(connection);
         }
     }
 
@@ -94,22 +142,133 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
     @Override
     public List<T> loadObjects() {
         List<T> list = new ArrayList<>();
+        loadObjects(list::add);
+        return list;
+    }
+
+    /**
+     * Streams the rows from the database, so only {@link #PARSE_CHUNK} rows and the driver's fetch buffer are held at once.
+     * Each chunk of rows is parsed, in parallel if the settings allow more than one load thread,
+     * and then passed to the consumer in order on this thread. Rows that cannot be parsed are reported and skipped.
+     */
+    @Override
+    public int loadObjects(Consumer<T> consumer) {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT `json` FROM `");
         sb.append(dataObject.getCanonicalName());
         sb.append("`");
-        try (Statement preparedStatement = connection.createStatement()) {
-            try (ResultSet resultSet = preparedStatement.executeQuery(sb.toString())) {
-                // Load all the results
-                Gson gson = getGSON();
-                while (resultSet.next()) {
-                    list.add(gson.fromJson(resultSet.getString("json"), dataObject));
+        int threads = getLoadThreads();
+        ForkJoinPool parsers = threads > 1 ? new ForkJoinPool(threads) : null;
+        int count = 0;
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (Statement statement = connection.createStatement()) {
+                // Integer.MIN_VALUE makes the driver stream rows one at a time instead of reading them all first
+                statement.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+                try (ResultSet resultSet = statement.executeQuery(sb.toString())) {
+                    List<String> rows = new ArrayList<>(PARSE_CHUNK);
+                    while (resultSet.next()) {
+                        rows.add(resultSet.getString("json"));
+                        if (rows.size() == PARSE_CHUNK) {
+                            count += parse(rows, parsers, consumer);
+                            rows.clear();
+                        }
+                    }
+                    count += parse(rows, parsers, consumer);
                 }
             }
         } catch (SQLException e) {
             plugin.getLogger().severe(() -> "Could not load objects " + e.getMessage());
+        } finally {
+            release(connection);
+            if (parsers != null) {
+                parsers.shutdown();
+            }
         }
-        return list;
+        return count;
+    }
+
+    /**
+     * @return number of threads to parse rows with, from the settings
+     */
+    private int getLoadThreads() {
+        int threads = bskyblock.getSettings().getDatabaseLoadThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Parses the rows and passes the objects to the consumer in order
+     * @param rows - JSON rows
+     * @param parsers - pool to parse in, or null to parse on this thread
+     * @param consumer - receives each object
+     * @return number of objects passed to the consumer
+     */
+    private int parse(List<String> rows, ForkJoinPool parsers, Consumer<T> consumer) {
+        List<T> objects;
+        if (parsers == null || rows.size() < 2) {
+            objects = rows.stream().map(this::parseRow).collect(Collectors.toList());
+        } else {
+            try {
+                objects = parsers.submit(() -> rows.parallelStream().map(this::parseRow).collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading " + dataObject.getSimpleName(), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error)e.getCause();
+                }
+                throw new IllegalStateException("Could not load " + dataObject.getSimpleName(), e.getCause());
+            }
+        }
+        int count = 0;
+        for (T object : objects) {
+            if (object != null) {
+                consumer.accept(object);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param json - JSON row
+     * @return the object, or null if it could not be parsed
+     */
+    private T parseRow(String json) {
+        try {
+            return gson.fromJson(json, dataObject);
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe(() -> "Could not load a " + dataObject.getSimpleName() + " " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Set<String> loadUniqueIds() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT JSON_UNQUOTE(uniqueId) FROM `");
+        sb.append(dataObject.getCanonicalName());
+        sb.append("`");
+        Set<String> ids = new HashSet<>();
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+                try (ResultSet resultSet = statement.executeQuery(sb.toString())) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe(() -> "Could not load object ids " + e.getMessage());
+            return null;
+        } finally {
+            release(connection);
+        }
+        return ids;
     }
 
     @Override
@@ -118,18 +277,23 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
         sb.append("SELECT `json` FROM `");
         sb.append(dataObject.getCanonicalName());
         sb.append("` WHERE uniqueId = ? LIMIT 1");
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sb.toString())) {
-            // UniqueId needs to be placed in quotes
-            preparedStatement.setString(1, "\"" + uniqueId + "\"");
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                while (resultSet.next()) {
-                    // If there is a result, we only want/need the first one
-                    Gson gson = getGSON();
-                    return gson.fromJson(resultSet.getString("json"), dataObject);
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sb.toString())) {
+                // UniqueId needs to be placed in quotes
+                preparedStatement.setString(1, "\"" + uniqueId + "\"");
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        // If there is a result, we only want/need the first one
+                        return gson.fromJson(resultSet.getString("json"), dataObject);
+                    }
                 }
             }
         } catch (SQLException e) {
             plugin.getLogger().severe(() -> "Could not load object " + uniqueId + " " + e.getMessage());
+        } finally {
+            release(connection);
         }
         return null;
     }
@@ -140,21 +304,105 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
             plugin.getLogger().severe(() -> "This class is not a DataObject: " + instance.getClass().getName());
             return;
         }
-        StringBuilder sb = new StringBuilder();
-        // Replace into is used so that any data in the table will be replaced with updated data
-        sb.append("INSERT INTO ");
-        sb.append("`");
-        // The table name is the canonical name, so that add-ons can be sure of a unique table in the database
-        sb.append(dataObject.getCanonicalName());
-        sb.append("` (json) VALUES (?) ON DUPLICATE KEY UPDATE json = ?");
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sb.toString())) {
-            Gson gson = getGSON();
-            String toStore = gson.toJson(instance);
-            preparedStatement.setString(1, toStore);
-            preparedStatement.setString(2, toStore);
-            preparedStatement.execute(); 
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(upsertSql)) {
+                preparedStatement.setString(1, gson.toJson(instance));
+                preparedStatement.execute();
+            }
         } catch (SQLException e) {
             plugin.getLogger().severe(() -> "Could not save object " + instance.getClass().getName() + " " + e.getMessage());
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Saves the objects in batches of up to {@link #BATCH_SIZE} rows in one transaction.
+     * If the database rejects a row, the transaction is rolled back and the objects are saved one at a time,
+     * so only the rejected ones fail.
+     */
+    @Override
+    public List<T> saveObjects(List<T> instances) {
+        List<T> failed = new ArrayList<>();
+        List<T> batch = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        for (T instance : instances) {
+            if (!(instance instanceof DataObject)) {
+                plugin.getLogger().severe(() -> "This class is not a DataObject: " + instance.getClass().getName());
+                failed.add(instance);
+                continue;
+            }
+            try {
+                rows.add(gson.toJson(instance));
+                batch.add(instance);
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe(() -> "Could not save object " + instance.getClass().getName() + " " + e.getMessage());
+                failed.add(instance);
+            }
+        }
+        if (batch.isEmpty()) {
+            return failed;
+        }
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(upsertSql)) {
+                try {
+                    for (int i = 0; i < rows.size(); i++) {
+                        preparedStatement.setString(1, rows.get(i));
+                        preparedStatement.addBatch();
+                        if ((i + 1) % BATCH_SIZE == 0) {
+                            preparedStatement.executeBatch();
+                        }
+                    }
+                    preparedStatement.executeBatch();
+                    connection.commit();
+                } catch (BatchUpdateException e) {
+                    connection.rollback();
+                    preparedStatement.clearBatch();
+                    plugin.getLogger().warning(() -> "Could not save " + batch.size() + " objects of " + dataObject.getName()
+                    + " in one batch, saving them one at a time " + e.getMessage());
+                    connection.setAutoCommit(true);
+                    saveRows(preparedStatement, rows, batch, failed);
+                }
+            } catch (SQLException e) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe(() -> "Could not save " + batch.size() + " objects of " + dataObject.getName() + " " + e.getMessage());
+            failed.addAll(batch);
+        } finally {
+            release(connection);
+        }
+        return failed;
+    }
+
+    /**
+     * Saves the rows one at a time
+     * @param preparedStatement - upsert statement
+     * @param rows - rows to save
+     * @param instances - the object of each row
+     * @param failed - the objects whose rows are rejected are added to this
+     */
+    private void saveRows(PreparedStatement preparedStatement, List<String> rows, List<T> instances, List<T> failed) {
+        for (int i = 0; i < rows.size(); i++) {
+            T instance = instances.get(i);
+            try {
+                preparedStatement.setString(1, rows.get(i));
+                preparedStatement.executeUpdate();
+            } catch (SQLException e) {
+                plugin.getLogger().severe(() -> "Could not save object " + instance.getClass().getName() + " " + e.getMessage());
+                failed.add(instance);
+            }
         }
     }
 
@@ -168,13 +416,19 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
         sb.append("DELETE FROM `");
         sb.append(dataObject.getCanonicalName());
         sb.append("` WHERE uniqueId = ?");
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sb.toString())) {
-            Method getUniqueId = dataObject.getMethod("getUniqueId");
-            String uniqueId = (String) getUniqueId.invoke(instance);
-            preparedStatement.setString(1, uniqueId);
-            preparedStatement.execute();
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sb.toString())) {
+                Method getUniqueId = dataObject.getMethod("getUniqueId");
+                String uniqueId = (String) getUniqueId.invoke(instance);
+                preparedStatement.setString(1, uniqueId);
+                preparedStatement.execute();
+            }
         } catch (Exception e) {
             plugin.getLogger().severe(() -> "Could not delete object " + instance.getClass().getName() + " " + e.getMessage());
+        } finally {
+            release(connection);
         }
     }
 
@@ -189,28 +443,28 @@ public class MySQLDatabaseHandler<T> extends AbstractDatabaseHandler<T> {
         query.append(dataObject.getCanonicalName());
         query.append("` WHERE `uniqueId` = ?), 1, 0)");
 
-        try (PreparedStatement preparedStatement = connection.prepareStatement(query.toString())) {
-            preparedStatement.setString(1, key);
-            try (ResultSet resultSet = preparedStatement.executeQuery()) {
-                if (resultSet.next()) {
-                    return resultSet.getBoolean(1);
+        Connection connection = null;
+        try {
+            connection = pool.take();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query.toString())) {
+                preparedStatement.setString(1, key);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getBoolean(1);
+                    }
                 }
             }
         } catch (SQLException e) {
             plugin.getLogger().severe("Could not check if key exists in database! " + key + " " + e.getMessage());
+        } finally {
+            release(connection);
         }
         return false;
     }
 
     @Override
     public void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                plugin.getLogger().severe("Could not close database for some reason");
-            }
-        }
+        pool.close();
     }
 
 }
@@ -23,4 +23,19 @@ public interface DataObject {
      */
     void setUniqueId(String uniqueId);
 
+    /**
+     * @return true if the object changed since it was last loaded or saved.
+     * Objects that do not keep track of changes are always saved.
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
+    /**
+     * @param dirty - true if the object changed, false once it is loaded or saved
+     */
+    default void setDirty(boolean dirty) {
+        // Not tracked
+    }
+
 }
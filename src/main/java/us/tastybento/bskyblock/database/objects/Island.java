@@ -1,5 +1,6 @@
 package us.tastybento.bskyblock.database.objects;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -10,8 +11,6 @@ import java.util.UUID;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.BlockState;
-import org.bukkit.entity.Entity;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
@@ -22,8 +21,10 @@ import us.tastybento.bskyblock.api.flags.Flag;
 import us.tastybento.bskyblock.api.user.User;
 import us.tastybento.bskyblock.database.objects.adapters.Adapter;
 import us.tastybento.bskyblock.database.objects.adapters.FlagSerializer;
+import us.tastybento.bskyblock.listeners.TileEntityLimitsListener;
 import us.tastybento.bskyblock.managers.RanksManager;
 import us.tastybento.bskyblock.util.Pair;
+import us.tastybento.bskyblock.util.UUIDIntMap;
 import us.tastybento.bskyblock.util.Util;
 
 /**
@@ -36,6 +37,9 @@ import us.tastybento.bskyblock.util.Util;
  */
 public class Island implements DataObject {
 
+    // Marks a flag that is not in the flag rank table yet
+    private static final int UNSET_RANK = Integer.MIN_VALUE;
+
     @Expose
     private String uniqueId = UUID.randomUUID().toString();
 
@@ -96,13 +100,28 @@ public class Island implements DataObject {
     //// Protection flags ////
     @Adapter(FlagSerializer.class)
     @Expose
-    private Map<Flag, Integer> flags = new HashMap<>();
+    private volatile Map<Flag, Integer> flags = new HashMap<>();
 
     @Expose
     private int levelHandicap;
     @Expose
     private Location spawnPoint;
 
+    // False if only the island index has been loaded. The rest is loaded on first use.
+    private transient volatile boolean hydrated = true;
+    // Set when the island is looked up or its details are loaded, so idle islands can be unloaded
+    private transient volatile boolean used;
+
+    // Same as flags, indexed by flag ordinal. Made again when flags change, and never changed once made,
+    // so flag checks only read. Flags that are not in it are looked up in flags.
+    private transient volatile int[] flagRanks = new int[0];
+    // Same as members. Made again when members change. Null until members first change, e.g., after loading with Gson.
+    private transient volatile UUIDIntMap ranks;
+    // Changes every time the flags change, so cached flag decisions can be checked
+    private transient int flagsVersion;
+    // True if the island changed since it was last loaded or saved
+    private transient volatile boolean dirty = true;
+
     public Island() {}
     public Island(Location location, UUID owner, int protectionRange) {
         setOwner(owner);
@@ -123,9 +142,12 @@ public class Island implements DataObject {
      * @param playerUUID - the player's UUID
      */
     public void addMember(UUID playerUUID) {
+        dirty = true;
+        ensureHydrated();
         if (playerUUID != null) {
             members.put(playerUUID, RanksManager.MEMBER_RANK);
         }
+        updateRanks();
     }
     /**
      * Adds target to a list of banned players for this island. May be blocked by the event being cancelled.
@@ -134,9 +156,12 @@ public class Island implements DataObject {
      * @return true if successfully added
      */
     public boolean addToBanList(UUID targetUUID) {
+        dirty = true;
+        ensureHydrated();
         if (targetUUID != null) {
             members.put(targetUUID, RanksManager.BANNED_RANK);
         }
+        updateRanks();
         return true;
     }
 
@@ -164,23 +189,53 @@ public class Island implements DataObject {
      * @return the date when the island was created
      */
     public long getCreatedDate(){
+        ensureHydrated();
         return createdDate;
     }
     /**
-     * Gets the rank needed to bypass this Island Guard flag
+     * Gets the rank needed to bypass this Island Guard flag.
+     * Flags are in the island index, so they are always loaded. This only reads, so it can be used from any thread.
      * @param flag
      * @return the rank needed to bypass this flag. Players must have at least this rank to bypass this flag.
+     * If the island does not have the flag, it is {@link RanksManager#MEMBER_RANK}.
      */
     public int getFlag(Flag flag){
-        if(flags.containsKey(flag)) {
-            return flags.get(flag);
-        } else {
-            flags.put(flag, RanksManager.MEMBER_RANK);
-            return RanksManager.MEMBER_RANK;
+        int[] table = flagRanks;
+        int ordinal = flag.getOrdinal();
+        if (ordinal >= 0 && ordinal < table.length && table[ordinal] != UNSET_RANK) {
+            return table[ordinal];
+        }
+        Integer rank = flags.get(flag);
+        return rank == null ? RanksManager.MEMBER_RANK : rank;
+    }
+
+    /**
+     * Makes the flag rank table for these flags
+     * @param flags - flags
+     * @return table indexed by flag ordinal
+     */
+    private static int[] flagRankTable(Map<Flag, Integer> flags) {
+        if (flags == null) {
+            return new int[0];
+        }
+        int length = 0;
+        for (Flag flag : flags.keySet()) {
+            if (flag != null) {
+                length = Math.max(length, flag.getOrdinal() + 1);
+            }
+        }
+        int[] table = new int[length];
+        Arrays.fill(table, UNSET_RANK);
+        for (Entry<Flag, Integer> en : flags.entrySet()) {
+            if (en.getKey() != null && en.getKey().getOrdinal() >= 0 && en.getValue() != null) {
+                table[en.getKey().getOrdinal()] = en.getValue();
+            }
         }
+        return table;
     }
 
     /**
+     * Use {@link #setFlag(Flag, int)} to change a flag, not this map
      * @return the flags
      */
     public Map<Flag, Integer> getFlags() {
@@ -191,6 +246,7 @@ public class Island implements DataObject {
      * @return the levelHandicap
      */
     public int getLevelHandicap() {
+        ensureHydrated();
         return levelHandicap;
     }
 
@@ -254,6 +310,7 @@ public class Island implements DataObject {
      * @return the island display name or the owner's name if none is set
      */
     public String getName() {
+        ensureHydrated();
         return name;
     }
 
@@ -275,6 +332,7 @@ public class Island implements DataObject {
      * @return true if the island is protected from the Purge, otherwise false
      */
     public boolean getPurgeProtected(){
+        ensureHydrated();
         return purgeProtected;
     }
 
@@ -291,7 +349,19 @@ public class Island implements DataObject {
      * @return rank integer
      */
     public int getRank(User user) {
-        return members.getOrDefault(user.getUniqueId(), RanksManager.VISITOR_RANK);
+        UUIDIntMap table = ranks;
+        if (table == null) {
+            Integer rank = members.get(user.getUniqueId());
+            return rank == null ? RanksManager.VISITOR_RANK : rank;
+        }
+        return table.get(user.getUniqueId(), RanksManager.VISITOR_RANK);
+    }
+
+    /**
+     * Makes the rank table again after members have changed
+     */
+    private void updateRanks() {
+        ranks = members == null ? null : new UUIDIntMap(members);
     }
 
     /**
@@ -302,49 +372,20 @@ public class Island implements DataObject {
     }
 
     public Location getSpawnPoint() {
+        ensureHydrated();
         return spawnPoint;
     }
 
     /**
-     * @param material
-     * @return count of how many tile entities of type mat are on the island at last count. Counts are done when a player places
-     * a tile entity.
+     * @param material - block type
+     * @param world - world
+     * @return count of how many tile entities of type material are on the island in this world.
+     * Counts are kept as blocks are placed and broken, and only for the types that have a limit in the settings.
+     * Returns 0 if the limits are not set up yet.
      */
     public int getTileEntityCount(Material material, World world) {
-        int result = 0;
-        for (int x = getMinProtectedX() /16; x <= (getMinProtectedX() + getProtectionRange() - 1)/16; x++) {
-            for (int z = getMinProtectedZ() /16; z <= (getMinProtectedZ() + getProtectionRange() - 1)/16; z++) {
-                for (BlockState holder : world.getChunkAt(x, z).getTileEntities()) {
-                    if (onIsland(holder.getLocation())) {
-                        if (holder.getType() == material) {
-                            result++;
-                        } else if (material.equals(Material.REDSTONE_COMPARATOR_OFF)) {
-                            if (holder.getType().equals(Material.REDSTONE_COMPARATOR_ON)) {
-                                result++;
-                            }
-                        } else if (material.equals(Material.FURNACE)) {
-                            if (holder.getType().equals(Material.BURNING_FURNACE)) {
-                                result++;
-                            }
-                        } else if (material.toString().endsWith("BANNER")) {
-                            if (holder.getType().toString().endsWith("BANNER")) {
-                                result++;
-                            }
-                        } else if (material.equals(Material.WALL_SIGN) || material.equals(Material.SIGN_POST)) {
-                            if (holder.getType().equals(Material.WALL_SIGN) || holder.getType().equals(Material.SIGN_POST)) {
-                                result++;
-                            }
-                        }
-                    }
-                }
-                for (Entity holder : world.getChunkAt(x, z).getEntities()) {
-                    if (holder.getType().toString().equals(material.toString()) && onIsland(holder.getLocation())) {
-                        result++;
-                    }
-                }
-            }
-        }
-        return result;
+        TileEntityLimitsListener limits = BSkyBlock.getInstance().getTileEntityLimits();
+        return limits == null ? 0 : limits.getCount(this, material, world);
     }
 
     @Override
@@ -356,6 +397,7 @@ public class Island implements DataObject {
      * @return the date when the island was updated (team member connection, etc...)
      */
     public long getUpdatedDate(){
+        ensureHydrated();
         return updatedDate;
     }
 
@@ -415,7 +457,8 @@ public class Island implements DataObject {
 
     /**
      * Check if the flag is allowed or not
-     * For flags that are for the island in general and not related to rank
+     * For flags that are for the island in general and not related to rank.
+     * The isAllowed methods only read, so they can be used from any thread.
      * @param flag
      * @return true if allowed, false if not
      */
@@ -456,6 +499,95 @@ public class Island implements DataObject {
         return spawn;
     }
 
+    /**
+     * @return true if all the island details are loaded, false if only its index entry is
+     */
+    public boolean isHydrated() {
+        return hydrated;
+    }
+
+    /**
+     * Loads the island details from the database if only the index entry has been loaded.
+     * The {@link us.tastybento.bskyblock.managers.IslandsManager} loads them in the background when the island is looked up,
+     * so this only has to load them on this thread if they are needed before that has finished.
+     */
+    private void ensureHydrated() {
+        if (!hydrated) {
+            BSkyBlock.getInstance().getIslands().hydrateIsland(this);
+        }
+    }
+
+    /**
+     * Fills in the details that are not in the island index.
+     * The index has the members, flags and lock, so they are kept as they are.
+     * @param details - island loaded from the database, or null if there is none
+     */
+    public void hydrate(Island details) {
+        if (details != null) {
+            name = details.name;
+            createdDate = details.createdDate;
+            updatedDate = details.updatedDate;
+            purgeProtected = details.purgeProtected;
+            levelHandicap = details.levelHandicap;
+            spawnPoint = details.spawnPoint;
+        }
+        used = true;
+        hydrated = true;
+    }
+
+    /**
+     * Drops the details that are not in the island index. They must have been saved first.
+     */
+    public void dehydrate() {
+        hydrated = false;
+        // Nothing is left to save
+        dirty = false;
+        used = false;
+        name = "";
+        createdDate = 0;
+        updatedDate = 0;
+        purgeProtected = false;
+        levelHandicap = 0;
+        spawnPoint = null;
+    }
+
+    /**
+     * Marks the island as used, so its details are not unloaded when it is idle.
+     * Reading the island, e.g., to save it, does not mark it.
+     */
+    public void markUsed() {
+        if (!used) {
+            used = true;
+        }
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    /**
+     * @return a number that changes every time the flags of this island change
+     */
+    public int getFlagsVersion() {
+        return flagsVersion;
+    }
+
+    /**
+     * Checks if the island details have been used since the last call and clears the mark
+     * @return true if they have been used
+     */
+    public boolean clearUsed() {
+        boolean result = used;
+        used = false;
+        return result;
+    }
+
     /**
      * Checks if a location is within this island's protected area
      *
@@ -477,18 +609,26 @@ public class Island implements DataObject {
      * @return true if successful, otherwise false.
      */
     public boolean removeFromBanList(UUID targetUUID) {
+        dirty = true;
+        ensureHydrated();
         members.remove(targetUUID);
+        updateRanks();
         return true;
     }
 
     public void removeMember(UUID playerUUID) {
+        dirty = true;
+        ensureHydrated();
         members.remove(playerUUID);
+        updateRanks();
     }
 
     /**
      * @param center the center to set
      */
     public void setCenter(Location center) {
+        dirty = true;
+        ensureHydrated();
         this.center = center;
     }
 
@@ -496,6 +636,8 @@ public class Island implements DataObject {
      * @param createdDate - the createdDate to sets
      */
     public void setCreatedDate(long createdDate){
+        dirty = true;
+        ensureHydrated();
         this.createdDate = createdDate;
     }
 
@@ -505,20 +647,33 @@ public class Island implements DataObject {
      * @param value - rank value. If the flag applies to the island, a positive number = true, negative = false
      */
     public void setFlag(Flag flag, int value){
-        flags.put(flag, value);
+        dirty = true;
+        ensureHydrated();
+        // Copied so that threads reading the flags never see the map change
+        Map<Flag, Integer> result = new HashMap<>(flags);
+        result.put(flag, value);
+        flags = result;
+        flagRanks = flagRankTable(result);
+        flagsVersion++;
     }
 
     /**
      * @param flags the flags to set
      */
     public void setFlags(Map<Flag, Integer> flags) {
+        dirty = true;
+        ensureHydrated();
         this.flags = flags;
+        flagRanks = flagRankTable(flags);
+        flagsVersion++;
     }
 
     /**
      * Resets the flags to their default as set in config.yml for this island
      */
     public void setFlagsDefaults(){
+        dirty = true;
+        ensureHydrated();
         /*for(SettingsFlag flag : SettingsFlag.values()){
             this.flags.put(flag, Settings.defaultIslandSettings.get(flag));
         }*/ //TODO default flags
@@ -528,6 +683,8 @@ public class Island implements DataObject {
      * @param levelHandicap the levelHandicap to set
      */
     public void setLevelHandicap(int levelHandicap) {
+        dirty = true;
+        ensureHydrated();
         this.levelHandicap = levelHandicap;
     }
 
@@ -536,6 +693,8 @@ public class Island implements DataObject {
      * @param locked - the lock state to set
      */
     public void setLocked(boolean locked){
+        dirty = true;
+        ensureHydrated();
         this.locked = locked;
     }
 
@@ -543,13 +702,18 @@ public class Island implements DataObject {
      * @param members the members to set
      */
     public void setMembers(Map<UUID, Integer> members) {
+        dirty = true;
+        ensureHydrated();
         this.members = members;
+        updateRanks();
     }
 
     /**
      * @param minProtectedX the minProtectedX to set
      */
     public final void setMinProtectedX(int minProtectedX) {
+        dirty = true;
+        ensureHydrated();
         this.minProtectedX = minProtectedX;
     }
 
@@ -557,6 +721,8 @@ public class Island implements DataObject {
      * @param minProtectedZ the minProtectedZ to set
      */
     public final void setMinProtectedZ(int minProtectedZ) {
+        dirty = true;
+        ensureHydrated();
         this.minProtectedZ = minProtectedZ;
     }
 
@@ -564,6 +730,8 @@ public class Island implements DataObject {
      * @param minX the minX to set
      */
     public final void setMinX(int minX) {
+        dirty = true;
+        ensureHydrated();
         this.minX = minX;
     }
 
@@ -571,6 +739,8 @@ public class Island implements DataObject {
      * @param minZ the minZ to set
      */
     public final void setMinZ(int minZ) {
+        dirty = true;
+        ensureHydrated();
         this.minZ = minZ;
     }
 
@@ -579,6 +749,8 @@ public class Island implements DataObject {
      *               Set to null to remove the display name
      */
     public void setName(String name){
+        dirty = true;
+        ensureHydrated();
         this.name = name;
     }
 
@@ -587,23 +759,27 @@ public class Island implements DataObject {
      * @param owner - the island owner - the owner/team leader to set
      */
     public void setOwner(UUID owner){
+        dirty = true;
+        ensureHydrated();
         this.owner = owner;
-        if (owner == null) {
-            return;
-        }
-        // Defensive code: demote any previous owner
-        for (Entry<UUID, Integer> en : members.entrySet()) {
-            if (en.getValue().equals(RanksManager.OWNER_RANK)) {
-                en.setValue(RanksManager.MEMBER_RANK);
+        if (owner != null) {
+            // Defensive code: demote any previous owner
+            for (Entry<UUID, Integer> en : members.entrySet()) {
+                if (en.getValue().equals(RanksManager.OWNER_RANK)) {
+                    en.setValue(RanksManager.MEMBER_RANK);
+                }
             }
+            members.put(owner, RanksManager.OWNER_RANK);
         }
-        members.put(owner, RanksManager.OWNER_RANK);
+        updateRanks();
     }
 
     /**
      * @param protectionRange the protectionRange to set
      */
     public void setProtectionRange(int protectionRange) {
+        dirty = true;
+        ensureHydrated();
         this.protectionRange = protectionRange;
     }
 
@@ -611,6 +787,8 @@ public class Island implements DataObject {
      * @param purgeProtected - if the island is protected from the Purge
      */
     public void setPurgeProtected(boolean purgeProtected){
+        dirty = true;
+        ensureHydrated();
         this.purgeProtected = purgeProtected;
     }
 
@@ -618,6 +796,8 @@ public class Island implements DataObject {
      * @param range - the range to set
      */
     public void setRange(int range){
+        dirty = true;
+        ensureHydrated();
         this.range = range;
     }
 
@@ -627,22 +807,30 @@ public class Island implements DataObject {
      * @param rank
      */
     public void setRank(User user, int rank) {
+        dirty = true;
+        ensureHydrated();
         if (user.getUniqueId() != null) {
             members.put(user.getUniqueId(), rank);
         }
+        updateRanks();
     }
 
     /**
      * @param ranks the ranks to set
      */
     public void setRanks(Map<UUID, Integer> ranks) {
+        dirty = true;
+        ensureHydrated();
         members = ranks;
+        updateRanks();
     }
 
     /**
      * @param isSpawn - if the island is the spawn
      */
     public void setSpawn(boolean isSpawn){
+        dirty = true;
+        ensureHydrated();
         spawn = isSpawn;
     }
 
@@ -650,18 +838,24 @@ public class Island implements DataObject {
      * Resets the flags to their default as set in config.yml for the spawn
      */
     public void setSpawnFlagsDefaults(){
+        dirty = true;
+        ensureHydrated();
         /*for(SettingsFlag flag : SettingsFlag.values()){
             this.flags.put(flag, Settings.defaultSpawnSettings.get(flag));
         }*/ //TODO default flags
     }
 
     public void setSpawnPoint(Location location) {
+        dirty = true;
+        ensureHydrated();
         spawnPoint = location;
 
     }
 
     @Override
     public void setUniqueId(String uniqueId) {
+        dirty = true;
+        ensureHydrated();
         this.uniqueId = uniqueId;
     }
 
@@ -669,6 +863,8 @@ public class Island implements DataObject {
      * @param updatedDate - the updatedDate to sets
      */
     public void setUpdatedDate(long updatedDate){
+        dirty = true;
+        ensureHydrated();
         this.updatedDate = updatedDate;
     }
 
@@ -676,6 +872,8 @@ public class Island implements DataObject {
      * @param world the world to set
      */
     public void setWorld(World world) {
+        dirty = true;
+        ensureHydrated();
         this.world = world;
     }
 }
\ No newline at end of file
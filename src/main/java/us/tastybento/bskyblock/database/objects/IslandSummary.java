@@ -0,0 +1,319 @@
+package us.tastybento.bskyblock.database.objects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import com.google.gson.annotations.Expose;
+
+import us.tastybento.bskyblock.api.flags.Flag;
+import us.tastybento.bskyblock.database.objects.adapters.Adapter;
+import us.tastybento.bskyblock.database.objects.adapters.FlagSerializer;
+
+/**
+ * The part of an island that is needed to index and protect it - where it is, who is on it, its flags and if it is locked.
+ * Used to load islands lazily, so protection never has to wait for the rest of the island to load.
+ * Has the same unique id as its island.
+ *
+ * @author tastybento
+ *
+ */
+public class IslandSummary implements DataObject {
+
+    /**
+     * Version of the summary. Summaries from older versions do not have everything and are made again from their island.
+     */
+    public static final int VERSION = 1;
+
+    @Expose
+    private String uniqueId;
+    @Expose
+    private World world;
+    @Expose
+    private Location center;
+    @Expose
+    private int range;
+    @Expose
+    private int minX;
+    @Expose
+    private int minZ;
+    @Expose
+    private int minProtectedX;
+    @Expose
+    private int minProtectedZ;
+    @Expose
+    private int protectionRange;
+    @Expose
+    private UUID owner;
+    @Expose
+    private Map<UUID, Integer> members = new HashMap<>();
+    @Expose
+    private boolean spawn;
+    @Adapter(FlagSerializer.class)
+    @Expose
+    private Map<Flag, Integer> flags = new HashMap<>();
+    @Expose
+    private boolean locked;
+    // 0 for summaries made before the version was stored
+    @Expose
+    private int version;
+
+    /**
+     * This is required for database storage
+     */
+    public IslandSummary() {}
+
+    /**
+     * @param island - island to summarize
+     */
+    public IslandSummary(Island island) {
+        uniqueId = island.getUniqueId();
+        world = island.getWorld();
+        center = island.getCenter();
+        range = island.getRange();
+        minX = island.getMinX();
+        minZ = island.getMinZ();
+        minProtectedX = island.getMinProtectedX();
+        minProtectedZ = island.getMinProtectedZ();
+        protectionRange = island.getProtectionRange();
+        owner = island.getOwner();
+        members = new HashMap<>(island.getMembers());
+        spawn = island.isSpawn();
+        flags = new HashMap<>(island.getFlags());
+        locked = island.isLocked();
+        version = VERSION;
+    }
+
+    /**
+     * Makes an island that only has the summary loaded. The rest is loaded the first time it is used.
+     * @return island
+     */
+    public Island toIsland() {
+        Island island = new Island();
+        island.setUniqueId(uniqueId);
+        island.setWorld(world);
+        island.setCenter(center);
+        island.setRange(range);
+        island.setMinX(minX);
+        island.setMinZ(minZ);
+        island.setMinProtectedX(minProtectedX);
+        island.setMinProtectedZ(minProtectedZ);
+        island.setProtectionRange(protectionRange);
+        island.setMembers(new HashMap<>(members));
+        island.setOwner(owner);
+        island.setSpawn(spawn);
+        island.setFlags(flags == null ? new HashMap<>() : new HashMap<>(flags));
+        island.setLocked(locked);
+        island.dehydrate();
+        return island;
+    }
+
+    @Override
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    @Override
+    public void setUniqueId(String uniqueId) {
+        this.uniqueId = uniqueId;
+    }
+
+    /**
+     * @return the world
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @param world the world to set
+     */
+    public void setWorld(World world) {
+        this.world = world;
+    }
+
+    /**
+     * @return the center
+     */
+    public Location getCenter() {
+        return center;
+    }
+
+    /**
+     * @param center the center to set
+     */
+    public void setCenter(Location center) {
+        this.center = center;
+    }
+
+    /**
+     * @return the range
+     */
+    public int getRange() {
+        return range;
+    }
+
+    /**
+     * @param range the range to set
+     */
+    public void setRange(int range) {
+        this.range = range;
+    }
+
+    /**
+     * @return the minX
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * @param minX the minX to set
+     */
+    public void setMinX(int minX) {
+        this.minX = minX;
+    }
+
+    /**
+     * @return the minZ
+     */
+    public int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * @param minZ the minZ to set
+     */
+    public void setMinZ(int minZ) {
+        this.minZ = minZ;
+    }
+
+    /**
+     * @return the minProtectedX
+     */
+    public int getMinProtectedX() {
+        return minProtectedX;
+    }
+
+    /**
+     * @param minProtectedX the minProtectedX to set
+     */
+    public void setMinProtectedX(int minProtectedX) {
+        this.minProtectedX = minProtectedX;
+    }
+
+    /**
+     * @return the minProtectedZ
+     */
+    public int getMinProtectedZ() {
+        return minProtectedZ;
+    }
+
+    /**
+     * @param minProtectedZ the minProtectedZ to set
+     */
+    public void setMinProtectedZ(int minProtectedZ) {
+        this.minProtectedZ = minProtectedZ;
+    }
+
+    /**
+     * @return the protectionRange
+     */
+    public int getProtectionRange() {
+        return protectionRange;
+    }
+
+    /**
+     * @param protectionRange the protectionRange to set
+     */
+    public void setProtectionRange(int protectionRange) {
+        this.protectionRange = protectionRange;
+    }
+
+    /**
+     * @return the owner
+     */
+    public UUID getOwner() {
+        return owner;
+    }
+
+    /**
+     * @param owner the owner to set
+     */
+    public void setOwner(UUID owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * @return the members
+     */
+    public Map<UUID, Integer> getMembers() {
+        return members;
+    }
+
+    /**
+     * @param members the members to set
+     */
+    public void setMembers(Map<UUID, Integer> members) {
+        this.members = members;
+    }
+
+    /**
+     * @return true if the island is the spawn
+     */
+    public boolean getSpawn() {
+        return spawn;
+    }
+
+    /**
+     * @param spawn - if the island is the spawn
+     */
+    public void setSpawn(boolean spawn) {
+        this.spawn = spawn;
+    }
+
+    /**
+     * @return the flags
+     */
+    public Map<Flag, Integer> getFlags() {
+        return flags;
+    }
+
+    /**
+     * @param flags the flags to set
+     */
+    public void setFlags(Map<Flag, Integer> flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * @return true if the island is locked
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * @param locked - if the island is locked
+     */
+    public void setLocked(boolean locked) {
+        this.locked = locked;
+    }
+
+    /**
+     * @return the version of the summary, 0 if it was made before the version was stored
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version the version to set
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+}
@@ -34,6 +34,8 @@ public class Players implements DataObject {
     private int deaths;
     @Expose
     private Map<Location, Long> kickedList = new HashMap<>();
+    // True if the player changed since they were last loaded or saved
+    private transient volatile boolean dirty = true;
 
     /**
      * This is required for database storage
@@ -94,6 +96,7 @@ public class Players implements DataObject {
      * @param kickedList the kickedList to set
      */
     public void setKickedList(Map<Location, Long> kickedList) {
+        dirty = true;
         this.kickedList = kickedList;
     }
 
@@ -101,6 +104,7 @@ public class Players implements DataObject {
      * @param homeLocations the homeLocations to set
      */
     public void setHomeLocations(Map<Integer, Location> homeLocations) {
+        dirty = true;
         this.homeLocations = homeLocations;
     }
 
@@ -108,6 +112,7 @@ public class Players implements DataObject {
      * @param playerName the playerName to set
      */
     public void setPlayerName(String playerName) {
+        dirty = true;
         this.playerName = playerName;
     }
 
@@ -135,6 +140,7 @@ public class Players implements DataObject {
      *            the resetsLeft to set
      */
     public void setResetsLeft(int resetsLeft) {
+        dirty = true;
         this.resetsLeft = resetsLeft;
     }
 
@@ -145,6 +151,7 @@ public class Players implements DataObject {
      *            a Bukkit location
      */
     public void setHomeLocation(final Location l) {
+        dirty = true;
         setHomeLocation(l, 1);
     }
 
@@ -154,6 +161,7 @@ public class Players implements DataObject {
      * @param number - a number
      */
     public void setHomeLocation(final Location location, int number) {
+        dirty = true;
         if (location == null) {
             homeLocations.clear();
         } else {
@@ -166,6 +174,7 @@ public class Players implements DataObject {
      * @param uuid - UUID
      */
     public void setPlayerUUID(UUID uuid) {
+        dirty = true;
         uniqueId = uuid.toString();
     }
 
@@ -173,6 +182,7 @@ public class Players implements DataObject {
      * Clears all home Locations
      */
     public void clearHomeLocations() {
+        dirty = true;
         homeLocations.clear();
     }
 
@@ -187,6 +197,7 @@ public class Players implements DataObject {
      * @param locale the locale to set
      */
     public void setLocale(String locale) {
+        dirty = true;
         this.locale = locale;
     }
 
@@ -201,6 +212,7 @@ public class Players implements DataObject {
      * @param deaths the deaths to set
      */
     public void setDeaths(int deaths) {
+        dirty = true;
         this.deaths = deaths;
         if (this.deaths > getPlugin().getSettings().getDeathsMax()) {
             this.deaths = getPlugin().getSettings().getDeathsMax();
@@ -211,6 +223,7 @@ public class Players implements DataObject {
      * Add death
      */
     public void addDeath() {
+        dirty = true;
         deaths++;
         if (deaths > getPlugin().getSettings().getDeathsMax()) {
             deaths = getPlugin().getSettings().getDeathsMax();
@@ -238,6 +251,7 @@ public class Players implements DataObject {
             Calendar timeNow = Calendar.getInstance();
             if (coolDownTime.before(timeNow)) {
                 // The time has expired
+                dirty = true;
                 kickedList.remove(location);
                 return 0;
             } else {
@@ -254,11 +268,22 @@ public class Players implements DataObject {
      * @param location - the location
      */
     public void startInviteCoolDownTimer(Location location) {
+        dirty = true;
         if (location != null) {
             kickedList.put(location, System.currentTimeMillis());
         }
     }
 
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
     @Override
     public String getUniqueId() {
         return uniqueId;
@@ -266,6 +291,7 @@ public class Players implements DataObject {
 
     @Override
     public void setUniqueId(String uniqueId) {
+        dirty = true;
         this.uniqueId = uniqueId;
     }
 
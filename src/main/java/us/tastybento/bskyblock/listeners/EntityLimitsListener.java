@@ -0,0 +1,217 @@
+package us.tastybento.bskyblock.listeners;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import us.tastybento.bskyblock.BSkyBlock;
+import us.tastybento.bskyblock.database.objects.Island;
+
+/**
+ * Enforces the entity limits in the settings for each island.
+ * Counts are kept up to date from spawn, death and chunk load and unload events,
+ * so a spawn attempt is checked with one island lookup and one array read.
+ * Every {@link #SWEEP_PERIOD} ticks, entities that went away without dying, like mobs that despawn,
+ * are dropped from the counts, and entities that moved are counted on the island they are on now.
+ * Entities are tracked by UUID, so no references to them are held.
+ *
+ * @author tastybento
+ *
+ */
+public class EntityLimitsListener implements Listener {
+
+    /**
+     * Ticks between sweeps for entities that are no longer valid
+     */
+    public static final long SWEEP_PERIOD = 600L;
+
+    private static final int NO_LIMIT = -1;
+
+    private final BSkyBlock plugin;
+    // Limit for each entity type by ordinal
+    private final int[] limits;
+    private final boolean anyLimits;
+    // Entity counts for each island by entity type ordinal
+    private final Map<Island, int[]> counts = new IdentityHashMap<>();
+    // The entities that are counted by UUID, with the island they are counted on
+    private final Map<UUID, Counted> counted = new HashMap<>();
+
+    private static class Counted {
+        // Entity type ordinal
+        private final int type;
+        // Counts of the island the entity is counted on, or null if it is not on an island
+        private int[] islandCounts;
+
+        Counted(int type, int[] islandCounts) {
+            this.type = type;
+            this.islandCounts = islandCounts;
+        }
+
+        /**
+         * Moves the entity's count to other island counts
+         * @param to - island counts, or null if the entity is not on an island
+         */
+        void moveTo(int[] to) {
+            if (islandCounts != null) {
+                islandCounts[type]--;
+            }
+            if (to != null) {
+                to[type]++;
+            }
+            islandCounts = to;
+        }
+    }
+
+    /**
+     * @param plugin - BSkyBlock plugin object
+     */
+    public EntityLimitsListener(BSkyBlock plugin) {
+        this.plugin = plugin;
+        limits = new int[EntityType.values().length];
+        Arrays.fill(limits, NO_LIMIT);
+        plugin.getSettings().getEntityLimits().forEach((type, limit) -> {
+            if (type != null && limit != null && limit >= 0) {
+                limits[type.ordinal()] = limit;
+            }
+        });
+        anyLimits = Arrays.stream(limits).anyMatch(l -> l != NO_LIMIT);
+        if (anyLimits) {
+            // Count the entities in chunks that are already loaded
+            for (World world : plugin.getServer().getWorlds()) {
+                for (Chunk chunk : world.getLoadedChunks()) {
+                    addChunk(chunk);
+                }
+            }
+            plugin.getServer().getScheduler().runTaskTimer(plugin, this::sweep, SWEEP_PERIOD, SWEEP_PERIOD);
+        }
+    }
+
+    /**
+     * Stops spawns that would take an island over its limit for the entity type
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onSpawnAttempt(final CreatureSpawnEvent e) {
+        int limit = limits[e.getEntityType().ordinal()];
+        if (limit == NO_LIMIT) {
+            return;
+        }
+        plugin.getIslands().getIslandAt(e.getLocation()).ifPresent(island -> {
+            int[] islandCounts = counts.get(island);
+            int count = islandCounts == null ? 0 : islandCounts[e.getEntityType().ordinal()];
+            if (count >= limit) {
+                e.setCancelled(true);
+            }
+        });
+    }
+
+    /**
+     * Counts entities that spawned
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpawn(final CreatureSpawnEvent e) {
+        add(e.getEntity());
+    }
+
+    /**
+     * Stops counting entities that died
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(final EntityDeathEvent e) {
+        remove(e.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(final ChunkLoadEvent e) {
+        if (anyLimits) {
+            addChunk(e.getChunk());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(final ChunkUnloadEvent e) {
+        if (anyLimits) {
+            for (Entity entity : e.getChunk().getEntities()) {
+                remove(entity);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entities of this type counted on the island
+     * @param island - island
+     * @param type - entity type
+     * @return number of entities
+     */
+    public int getCount(Island island, EntityType type) {
+        int[] islandCounts = counts.get(island);
+        return islandCounts == null ? 0 : islandCounts[type.ordinal()];
+    }
+
+    private void addChunk(Chunk chunk) {
+        for (Entity entity : chunk.getEntities()) {
+            add(entity);
+        }
+    }
+
+    private void add(Entity entity) {
+        if (limits[entity.getType().ordinal()] == NO_LIMIT || counted.containsKey(entity.getUniqueId())) {
+            return;
+        }
+        plugin.getIslands().getIslandAt(entity.getLocation()).ifPresent(island -> {
+            Counted c = new Counted(entity.getType().ordinal(), null);
+            c.moveTo(counts.computeIfAbsent(island, k -> new int[limits.length]));
+            counted.put(entity.getUniqueId(), c);
+        });
+    }
+
+    private void remove(Entity entity) {
+        Counted c = counted.remove(entity.getUniqueId());
+        if (c != null) {
+            c.moveTo(null);
+        }
+    }
+
+    /**
+     * Drops entities that have gone away without an event, for example by despawning,
+     * and moves the counts of entities that have moved to another island
+     */
+    private void sweep() {
+        Iterator<Entry<UUID, Counted>> it = counted.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<UUID, Counted> en = it.next();
+            Entity entity = plugin.getServer().getEntity(en.getKey());
+            if (entity == null || !entity.isValid()) {
+                en.getValue().moveTo(null);
+                it.remove();
+                continue;
+            }
+            // Looking the island up does not mark it used
+            Island island = plugin.getIslands().findIslandAt(entity.getLocation()).orElse(null);
+            int[] islandCounts = island == null ? null : counts.computeIfAbsent(island, k -> new int[limits.length]);
+            if (islandCounts != en.getValue().islandCounts) {
+                en.getValue().moveTo(islandCounts);
+            }
+        }
+        // Drop islands that no longer have anything counted, for example deleted ones
+        counts.values().removeIf(islandCounts -> Arrays.stream(islandCounts).allMatch(n -> n == 0));
+    }
+}
@@ -0,0 +1,36 @@
+package us.tastybento.bskyblock.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import us.tastybento.bskyblock.BSkyBlock;
+
+/**
+ * Keeps the island chunk table in step with the chunks that are loaded
+ * @author tastybento
+ *
+ */
+public class IslandChunkListener implements Listener {
+
+    private BSkyBlock plugin;
+
+    /**
+     * @param plugin - BSkyBlock plugin object
+     */
+    public IslandChunkListener(BSkyBlock plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(final ChunkLoadEvent e) {
+        plugin.getIslands().getChunkCache().addChunk(e.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(final ChunkUnloadEvent e) {
+        plugin.getIslands().getChunkCache().removeChunk(e.getChunk());
+    }
+}
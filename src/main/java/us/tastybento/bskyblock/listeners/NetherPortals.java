@@ -1,11 +1,9 @@
 package us.tastybento.bskyblock.listeners;
 
-import java.util.Iterator;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
@@ -24,6 +22,7 @@ import org.bukkit.util.Vector;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.api.user.User;
+import us.tastybento.bskyblock.util.ExplosionFilter;
 import us.tastybento.bskyblock.util.teleport.SafeTeleportBuilder;
 
 public class NetherPortals implements Listener {
@@ -171,13 +170,16 @@ public class NetherPortals implements Listener {
         if (expl == null) {
             return;
         }
-        Iterator<Block> it = e.blockList().iterator();
-        while (it.hasNext()) {
-            Block b = it.next();
-            if (!awayFromSpawn(b.getLocation())) {
-                it.remove();
-            }
-        }
+        // Remove the blocks that are near spawn, working out the spawn and radius once
+        Location spawn = e.getLocation().getWorld().getSpawnLocation();
+        double spawnX = spawn.getX();
+        double spawnZ = spawn.getZ();
+        double radiusSquared = (double)plugin.getSettings().getNetherSpawnRadius() * plugin.getSettings().getNetherSpawnRadius();
+        ExplosionFilter.removeIf(e.blockList(), b -> {
+            double dx = b.getX() - spawnX;
+            double dz = b.getZ() - spawnZ;
+            return dx * dx + dz * dz < radiusSquared;
+        });
     }
 
     /**
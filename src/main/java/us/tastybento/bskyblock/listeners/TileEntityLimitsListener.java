@@ -0,0 +1,495 @@
+package us.tastybento.bskyblock.listeners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+
+import us.tastybento.bskyblock.BSkyBlock;
+import us.tastybento.bskyblock.api.events.island.IslandEvent.IslandDeletedEvent;
+import us.tastybento.bskyblock.api.user.User;
+import us.tastybento.bskyblock.database.objects.Island;
+
+/**
+ * Enforces the tile entity limits in the settings for each island.
+ * Counts are kept for each island and world from block place, break, burn and explode events,
+ * so a place attempt is checked with one island lookup and one array read.
+ * Item frames, paintings and armor stands are entities, and are counted from hanging place and break,
+ * creature spawn and entity death events. Armor stands are limited when they spawn, so the player
+ * placing one is not told why it did not appear.
+ * Counts are seeded and reconciled by counting the blocks in chunk snapshots off the main thread, for islands
+ * that have changed and whose chunks are all loaded. Chunks are never loaded to count them, so placements on an
+ * island are allowed until its first audit finishes. Pistons cannot move tile entities, so they do not change the counts.
+ *
+ * @author tastybento
+ *
+ */
+public class TileEntityLimitsListener implements Listener {
+
+    /**
+     * Ticks between audits of islands whose counts have changed
+     */
+    public static final long AUDIT_PERIOD = 6000L;
+
+    private static final int MAX_TYPE_ID = 4096;
+
+    private final BSkyBlock plugin;
+    // Limited block types by slot
+    private final Material[] types;
+    // Limits by slot
+    private final int[] limits;
+    // Slot for each block type id, or -1 if it is not limited
+    private final int[] slotByTypeId = new int[MAX_TYPE_ID];
+    // Slot for each limited type, as it is counted
+    private final Map<Material, Integer> slotByMaterial = new EnumMap<>(Material.class);
+    // Slot for each limited entity type, e.g., item frames
+    private final Map<EntityType, Integer> slotByEntityType = new EnumMap<>(EntityType.class);
+    private final Map<World, Map<Island, Counts>> counts = new HashMap<>();
+
+    private static class Counts {
+        private final int[] counts;
+        // True once the counts have been audited at least once
+        private boolean audited;
+        // True if the counts changed since the last audit
+        private boolean dirty;
+        // Changes made while an audit is running, or null if no audit is running
+        private int[] pending;
+
+        Counts(int size) {
+            counts = new int[size];
+        }
+    }
+
+    /**
+     * The chunks of an island's protected area and the limited entities in it
+     */
+    private static class IslandSnapshot {
+        private final List<ChunkSnapshot> chunks = new ArrayList<>();
+        // Entities are counted when the snapshot is taken, as they cannot be read off the main thread
+        private final int[] entities;
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+
+        IslandSnapshot(Island island, int size) {
+            entities = new int[size];
+            minX = island.getMinProtectedX();
+            minZ = island.getMinProtectedZ();
+            maxX = minX + island.getProtectionRange() - 1;
+            maxZ = minZ + island.getProtectionRange() - 1;
+        }
+
+        boolean contains(Location l) {
+            return l.getBlockX() >= minX && l.getBlockX() <= maxX && l.getBlockZ() >= minZ && l.getBlockZ() <= maxZ;
+        }
+    }
+
+    /**
+     * @param plugin - BSkyBlock plugin object
+     */
+    @SuppressWarnings("deprecation")
+    public TileEntityLimitsListener(BSkyBlock plugin) {
+        this.plugin = plugin;
+        Map<Material, Integer> limitMap = new LinkedHashMap<>();
+        Map<String, Integer> settings = new HashMap<>(plugin.getSettings().getLimitedBlocks());
+        settings.putAll(plugin.getSettings().getTileEntityLimits());
+        settings.forEach((name, limit) -> {
+            Material material = Material.matchMaterial(name);
+            if (material == null || limit == null || limit < 0) {
+                plugin.getLogger().warning("Unknown tile entity limit " + name + ": " + limit);
+            } else {
+                limitMap.put(canonical(material), limit);
+            }
+        });
+        types = limitMap.keySet().toArray(new Material[0]);
+        limits = limitMap.values().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.fill(slotByTypeId, -1);
+        for (int slot = 0; slot < types.length; slot++) {
+            slotByMaterial.put(types[slot], slot);
+        }
+        for (Material material : Material.values()) {
+            int slot = slot(material);
+            if (material.isBlock() && slot >= 0 && material.getId() < MAX_TYPE_ID) {
+                slotByTypeId[material.getId()] = slot;
+            }
+        }
+        for (int slot = 0; slot < types.length; slot++) {
+            for (EntityType type : EntityType.values()) {
+                if (type.name().equals(types[slot].name())) {
+                    slotByEntityType.put(type, slot);
+                }
+            }
+        }
+        if (types.length > 0) {
+            plugin.getServer().getScheduler().runTaskTimer(plugin, this::auditChanged, AUDIT_PERIOD, AUDIT_PERIOD);
+        }
+    }
+
+    /**
+     * Block types that are the same tile entity count as one type
+     * @param material - block or item type
+     * @return the type it is counted as
+     */
+    private static Material canonical(Material material) {
+        switch (material) {
+        case BURNING_FURNACE:
+            return Material.FURNACE;
+        case REDSTONE_COMPARATOR_OFF:
+        case REDSTONE_COMPARATOR_ON:
+            return Material.REDSTONE_COMPARATOR;
+        case SIGN_POST:
+        case WALL_SIGN:
+            return Material.SIGN;
+        case STANDING_BANNER:
+        case WALL_BANNER:
+            return Material.BANNER;
+        case DAYLIGHT_DETECTOR_INVERTED:
+            return Material.DAYLIGHT_DETECTOR;
+        case SKULL_ITEM:
+            return Material.SKULL;
+        case FLOWER_POT_ITEM:
+            return Material.FLOWER_POT;
+        default:
+            return material;
+        }
+    }
+
+    private int slot(Material material) {
+        Integer slot = slotByMaterial.get(canonical(material));
+        return slot == null ? -1 : slot;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int slot(Block block) {
+        int id = block.getTypeId();
+        return id >= 0 && id < MAX_TYPE_ID ? slotByTypeId[id] : -1;
+    }
+
+    private int slot(Entity entity) {
+        Integer slot = slotByEntityType.get(entity.getType());
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Stops blocks being placed that would take an island over its limit
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onPlaceAttempt(final BlockPlaceEvent e) {
+        int slot = slot(e.getBlockPlaced());
+        if (slot >= 0) {
+            checkLimit(e, e.getBlockPlaced().getLocation(), slot, e.getPlayer());
+        }
+    }
+
+    /**
+     * Stops item frames and paintings being hung that would take an island over its limit
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onHangingPlaceAttempt(final HangingPlaceEvent e) {
+        int slot = slot(e.getEntity());
+        if (slot >= 0) {
+            checkLimit(e, e.getEntity().getLocation(), slot, e.getPlayer());
+        }
+    }
+
+    /**
+     * Stops armor stands spawning that would take an island over its limit
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
+    public void onSpawnAttempt(final CreatureSpawnEvent e) {
+        int slot = slot(e.getEntity());
+        if (slot >= 0) {
+            checkLimit(e, e.getLocation(), slot, null);
+        }
+    }
+
+    /**
+     * Cancels the event if the island at the location has reached its limit for this slot.
+     * If the island's counts are not known yet, an audit is started and the event is allowed.
+     * @param e - event
+     * @param l - location
+     * @param slot - limit slot
+     * @param player - player to tell, or null if there is none
+     */
+    private void checkLimit(Cancellable e, Location l, int slot, Player player) {
+        plugin.getIslands().getProtectedIslandAt(l).ifPresent(island -> {
+            Counts c = getCounts(l.getWorld(), island);
+            if (!c.audited) {
+                audit(l.getWorld(), island, c);
+                return;
+            }
+            if (c.counts[slot] >= limits[slot]) {
+                e.setCancelled(true);
+                if (player != null) {
+                    User.getInstance(player).notify("protection.tile-entity-limit",
+                            "[number]", String.valueOf(limits[slot]), "[type]", types[slot].toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts blocks that were placed
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(final BlockPlaceEvent e) {
+        change(e.getBlockPlaced(), 1);
+    }
+
+    /**
+     * Stops counting blocks that were broken
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(final BlockBreakEvent e) {
+        change(e.getBlock(), -1);
+    }
+
+    /**
+     * Stops counting blocks that burned
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBurn(final BlockBurnEvent e) {
+        change(e.getBlock(), -1);
+    }
+
+    /**
+     * Stops counting blocks that were blown up
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final EntityExplodeEvent e) {
+        e.blockList().forEach(b -> change(b, -1));
+    }
+
+    /**
+     * Stops counting blocks that were blown up
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final BlockExplodeEvent e) {
+        e.blockList().forEach(b -> change(b, -1));
+    }
+
+    /**
+     * Counts item frames and paintings that were hung
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHangingPlace(final HangingPlaceEvent e) {
+        change(e.getEntity(), 1);
+    }
+
+    /**
+     * Stops counting item frames and paintings that were broken
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHangingBreak(final HangingBreakEvent e) {
+        change(e.getEntity(), -1);
+    }
+
+    /**
+     * Counts armor stands that spawned
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpawn(final CreatureSpawnEvent e) {
+        change(e.getEntity(), 1);
+    }
+
+    /**
+     * Stops counting armor stands that were destroyed
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(final EntityDeathEvent e) {
+        change(e.getEntity(), -1);
+    }
+
+    /**
+     * Forgets the counts of deleted islands
+     * @param e - event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onIslandDeleted(final IslandDeletedEvent e) {
+        counts.values().forEach(m -> m.remove(e.getIsland()));
+    }
+
+    /**
+     * Gets the number of tile entities of this type counted on the island in this world
+     * @param island - island
+     * @param material - block type
+     * @param world - world
+     * @return number of tile entities, or 0 if the type is not limited
+     */
+    public int getCount(Island island, Material material, World world) {
+        int slot = slot(material);
+        Map<Island, Counts> worldCounts = counts.get(world);
+        Counts c = worldCounts == null ? null : worldCounts.get(island);
+        return slot < 0 || c == null ? 0 : c.counts[slot];
+    }
+
+    private Counts getCounts(World world, Island island) {
+        return counts.computeIfAbsent(world, k -> new IdentityHashMap<>()).computeIfAbsent(island, k -> new Counts(types.length));
+    }
+
+    private void change(Block block, int delta) {
+        int slot = slot(block);
+        if (slot >= 0) {
+            change(block.getLocation(), slot, delta);
+        }
+    }
+
+    private void change(Entity entity, int delta) {
+        int slot = slot(entity);
+        if (slot >= 0) {
+            change(entity.getLocation(), slot, delta);
+        }
+    }
+
+    private void change(Location l, int slot, int delta) {
+        plugin.getIslands().getProtectedIslandAt(l).ifPresent(island -> {
+            Counts c = getCounts(l.getWorld(), island);
+            c.counts[slot] = Math.max(0, c.counts[slot] + delta);
+            c.dirty = true;
+            if (c.pending != null) {
+                c.pending[slot] += delta;
+            }
+        });
+    }
+
+    /**
+     * Audits the islands whose counts changed since their last audit
+     */
+    private void auditChanged() {
+        counts.forEach((world, worldCounts) -> worldCounts.forEach((island, c) -> {
+            if (c.dirty || !c.audited) {
+                audit(world, island, c);
+            }
+        }));
+    }
+
+    /**
+     * Counts the limited blocks on the island in chunk snapshots off the main thread.
+     * Nothing is done if any chunk of the island is not loaded, or an audit is already running.
+     * @param world - world
+     * @param island - island
+     * @param c - counts to reconcile
+     */
+    private void audit(World world, Island island, Counts c) {
+        if (c.pending != null) {
+            return;
+        }
+        IslandSnapshot snapshot = snapshot(world, island);
+        if (snapshot == null) {
+            return;
+        }
+        c.pending = new int[types.length];
+        c.dirty = false;
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            int[] result = count(snapshot);
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                for (int i = 0; i < result.length; i++) {
+                    c.counts[i] = Math.max(0, result[i] + c.pending[i]);
+                }
+                c.pending = null;
+                c.audited = true;
+            });
+        });
+    }
+
+    /**
+     * Takes snapshots of the island's chunks and counts its limited entities
+     * @param world - world
+     * @param island - island
+     * @return the snapshot, or null if a chunk is not loaded
+     */
+    private IslandSnapshot snapshot(World world, Island island) {
+        IslandSnapshot snapshot = new IslandSnapshot(island, types.length);
+        for (int x = snapshot.minX >> 4; x <= snapshot.maxX >> 4; x++) {
+            for (int z = snapshot.minZ >> 4; z <= snapshot.maxZ >> 4; z++) {
+                if (!world.isChunkLoaded(x, z)) {
+                    return null;
+                }
+                Chunk chunk = world.getChunkAt(x, z);
+                snapshot.chunks.add(chunk.getChunkSnapshot(false, false, false));
+                if (!slotByEntityType.isEmpty()) {
+                    for (Entity entity : chunk.getEntities()) {
+                        int slot = slot(entity);
+                        if (slot >= 0 && snapshot.contains(entity.getLocation())) {
+                            snapshot.entities[slot]++;
+                        }
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int[] count(IslandSnapshot islandSnapshot) {
+        int[] result = islandSnapshot.entities.clone();
+        int minX = islandSnapshot.minX;
+        int minZ = islandSnapshot.minZ;
+        int maxX = islandSnapshot.maxX;
+        int maxZ = islandSnapshot.maxZ;
+        for (ChunkSnapshot snapshot : islandSnapshot.chunks) {
+            int baseX = snapshot.getX() << 4;
+            int baseZ = snapshot.getZ() << 4;
+            int fromX = Math.max(minX - baseX, 0);
+            int toX = Math.min(maxX - baseX, 15);
+            int fromZ = Math.max(minZ - baseZ, 0);
+            int toZ = Math.min(maxZ - baseZ, 15);
+            for (int section = 0; section < 16; section++) {
+                if (snapshot.isSectionEmpty(section)) {
+                    continue;
+                }
+                for (int y = section << 4; y < (section + 1) << 4; y++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        for (int z = fromZ; z <= toZ; z++) {
+                            int id = snapshot.getBlockTypeId(x, y, z);
+                            if (id >= 0 && id < MAX_TYPE_ID && slotByTypeId[id] >= 0) {
+                                result[slotByTypeId[id]]++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -3,8 +3,13 @@
  */
 package us.tastybento.bskyblock.listeners.flags;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -17,9 +22,13 @@ import org.bukkit.event.Listener;
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.api.flags.Flag;
 import us.tastybento.bskyblock.api.flags.Flag.Type;
+import us.tastybento.bskyblock.api.flags.FlagDecision;
+import us.tastybento.bskyblock.api.flags.FlagDecision.Reason;
 import us.tastybento.bskyblock.api.user.User;
 import us.tastybento.bskyblock.database.objects.Island;
 import us.tastybento.bskyblock.managers.IslandsManager;
+import us.tastybento.bskyblock.managers.island.ChunkSettingCache;
+import us.tastybento.bskyblock.managers.island.IslandChunkCache;
 
 /**
  * Abstract class for flag listeners. Provides common code.
@@ -28,8 +37,38 @@ import us.tastybento.bskyblock.managers.IslandsManager;
  */
 public abstract class AbstractFlagListener implements Listener {
 
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Event.class);
+    // Used for events that have no getPlayer method
+    private static final MethodHandle NO_PLAYER = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Event.class);
+    /**
+     * The getPlayer method of each event class, looked up the first time the class is seen
+     */
+    private static final ClassValue<MethodHandle> PLAYER_GETTERS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Method getPlayer = type.getMethod("getPlayer");
+                if (getPlayer.getReturnType().isPrimitive()) {
+                    return NO_PLAYER;
+                }
+                getPlayer.setAccessible(true);
+                return MethodHandles.lookup().unreflect(getPlayer).asType(GETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                return NO_PLAYER;
+            }
+        }
+    };
+
+    // The context of the last event checked on the main thread. Flag listeners that handle the same event share it.
+    // Only used on the main thread. It is held weakly so the event and its island are not kept after the event.
+    private static WeakReference<ProtectionContext> lastContext = new WeakReference<>(null);
+    // Setting flag decisions per chunk, shared by the flag listeners. Only used on the main thread.
+    private static ChunkSettingCache settingCache;
+
     private BSkyBlock plugin = BSkyBlock.getInstance();
     private User user = null;
+    // The shared context and setting cache can only be used on the main thread
+    private BooleanSupplier primaryThread = Bukkit::isPrimaryThread;
 
     /**
      * @return the plugin
@@ -47,32 +86,46 @@ public abstract class AbstractFlagListener implements Listener {
     }
 
     /**
-     * Sets the player associated with this event.
-     * If the user is a fake player, they are not counted.
+     * Used for unit testing only to say which thread is the main thread
+     * @param primaryThread - returns true on the main thread
+     */
+    public void setPrimaryThread(BooleanSupplier primaryThread) {
+        this.primaryThread = primaryThread;
+    }
+
+    /**
+     * Gets the player associated with this event.
      * @param e - event
-     * @return true if found, otherwise false
+     * @return the User or null if there is none or getPlayer throws an exception, which is logged
      */
-    private boolean createEventUser(Event e) {
+    private User getEventUser(Event e) {
+        Object player;
         try {
-            // Use reflection to get the getPlayer method if it exists
-            Method getPlayer = e.getClass().getMethod("getPlayer");
-            if (getPlayer != null) {
-                setUser(User.getInstance((Player)getPlayer.invoke(e)));
-                return true;
-            }
-        } catch (Exception e1) {  // Do nothing
+            player = (Object) PLAYER_GETTERS.get(e.getClass()).invokeExact(e);
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable t) {
+            // getPlayer threw an exception. The event is checked as if it had no player.
+            Bukkit.getLogger().log(Level.SEVERE, "Could not get the player of " + e.getEventName(), t);
+            return null;
+        }
+        if (!(player instanceof Player)) {
+            return null;
         }
-        return false;
+        return User.getInstance((Player)player);
+    }
+
+    private boolean isFakePlayer(User user) {
+        return plugin.getSettings().getFakePlayers().contains(user.getName());
     }
 
     /**
-     * Explicitly set the user for the next {@link #checkIsland(Event, Location, Flag)} or {@link #checkIsland(Event, Location, Flag, boolean)}
+     * Explicitly set the user for the next {@link #checkIsland(Event, Location, Flag)} or {@link #checkIsland(Event, Location, Flag, boolean)}.
+     * It is better to use {@link #checkIsland(Event, Location, Flag, User)}, which does not keep the user in the listener.
      * @param user - the User
      */
     public AbstractFlagListener setUser(User user) {
-        if (!plugin.getSettings().getFakePlayers().contains(user.getName())) {
-            this.user = user;
-        }
+        this.user = user;
         return this;
     }
 
@@ -94,6 +147,16 @@ public abstract class AbstractFlagListener implements Listener {
      * @param silent - if true, message is not sent
      */
     public void noGo(Event e, boolean silent) {
+        noGo(e, user, silent);
+    }
+
+    /**
+     * Cancels the event and sends the island protected message to user unless silent is true
+     * @param e - event
+     * @param user - the User to tell, or null if there is none
+     * @param silent - if true, message is not sent
+     */
+    public void noGo(Event e, User user, boolean silent) {
         if (e instanceof Cancellable) {
             ((Cancellable)e).setCancelled(true);
         }
@@ -149,61 +212,172 @@ public abstract class AbstractFlagListener implements Listener {
 
 
     /**
-     * Check if flag is allowed
+     * Check if flag is allowed.
+     * The user is the one set by {@link #setUser(User)}, or if none was set, the player in the event.
      * @param e - event
      * @param loc - location
      * @param silent - if true, no attempt is made to tell the user
      * @return true if the check is okay, false if it was disallowed
      */
     public boolean checkIsland(Event e, Location loc, Flag flag, boolean silent) {
+        User u = user;
+        // Clear the user for the next time
+        user = null;
+        ProtectionContext context = getContext(e, loc);
+        if (u == null && flag.getType().equals(Type.PROTECTION)) {
+            if (!context.isEventUserResolved()) {
+                context.setEventUser(getEventUser(e));
+            }
+            u = context.getEventUser();
+        }
+        return checkIsland(e, context, flag, u, silent);
+    }
+
+    /**
+     * Check if flag is allowed for user
+     * @param e - event
+     * @param loc - location
+     * @param flag - flag
+     * @param user - the User doing the action
+     * @return true if the check is okay, false if it was disallowed
+     */
+    public boolean checkIsland(Event e, Location loc, Flag flag, User user) {
+        return checkIsland(e, loc, flag, user, false);
+    }
+
+    /**
+     * Check if flag is allowed for user and cancel the event if it is not
+     * @param e - event
+     * @param loc - location
+     * @param flag - flag
+     * @param user - the User doing the action
+     * @param silent - if true, no attempt is made to tell the user
+     * @return true if the check is okay, false if it was disallowed
+     */
+    public boolean checkIsland(Event e, Location loc, Flag flag, User user, boolean silent) {
+        return checkIsland(e, getContext(e, loc), flag, user, silent);
+    }
+
+    private boolean checkIsland(Event e, ProtectionContext context, Flag flag, User user, boolean silent) {
+        if (user != null) {
+            // Check if the plugin is set in User (required for testing)
+            User.setPlugin(plugin);
+        }
+        FlagDecision decision = check(context, user, flag);
+        switch (decision.getReason()) {
+        case NO_USER:
+            // The user is not set, and the event does not hold a getPlayer, so return false
+            // TODO: is this the correct handling here?
+            Bukkit.getLogger().severe("Check island had no associated user! " + e.getEventName());
+            return false;
+        case ISLAND_RANK:
+        case WORLD_DEFAULT:
+            if (!decision.isAllowed()) {
+                noGo(e, user, silent);
+            }
+            return decision.isAllowed();
+        default:
+            return decision.isAllowed();
+        }
+    }
+
+    /**
+     * Checks if flag is allowed for user at the location.
+     * This only reads. It does not change the island, the user or this listener, does not mark the island as used
+     * and does not load anything from the database, so it can be used from any thread.
+     * @param loc - location
+     * @param user - the User, or null if there is none
+     * @param flag - flag
+     * @return the decision
+     */
+    public FlagDecision check(Location loc, User user, Flag flag) {
+        return check(createContext(null, loc), user, flag);
+    }
+
+    /**
+     * Checks if flag is allowed for user in this context. This only reads, see {@link #check(Location, User, Flag)}.
+     * @param context - context of the event
+     * @param user - the User, or null if there is none
+     * @param flag - flag
+     * @return the decision
+     */
+    public FlagDecision check(ProtectionContext context, User user, Flag flag) {
         // If this is not an Island World, skip
-        if (!inWorld(loc)) {
-            return true;
+        if (!context.isInWorld()) {
+            return new FlagDecision(true, Reason.NOT_IN_WORLD, null);
         }
 
         // Get the island and if present
-        Optional<Island> island = getIslands().getIslandAt(loc);
+        Island island = context.getIsland().orElse(null);
         // Handle Settings Flag
         if (flag.getType().equals(Type.SETTING)) {
             // If the island exists, return the setting, otherwise return the default setting for this flag
-            return island.map(x -> x.isAllowed(flag)).orElse(flag.isDefaultSetting());
+            return new FlagDecision(island == null ? flag.isDefaultSetting() : island.isAllowed(flag), Reason.SETTING, island);
         }
 
         // Protection flag
-
-        // If the user is not set already, try to get it from the event
         if (user == null) {
-            // Set the user associated with this event
-            if (!createEventUser(e)) {
-                // The user is not set, and the event does not hold a getPlayer, so return false
-                // TODO: is this the correct handling here?
-                Bukkit.getLogger().severe("Check island had no associated user! " + e.getEventName());
-                return false;
-            }
+            return new FlagDecision(false, Reason.NO_USER, island);
         }
-        // Check if the plugin is set in User (required for testing)
-        user.setPlugin(plugin);
-
-        if (island.isPresent()) {
-            if (!island.get().isAllowed(user, flag)) {
-                noGo(e, silent);
-                // Clear the user for the next time
-                user = null;
-                return false;
-            } else {
-                user = null;
-                return true;
-            }
+        // Fake players are let through
+        if (isFakePlayer(user)) {
+            return new FlagDecision(true, Reason.FAKE_PLAYER, island);
+        }
+        if (island != null) {
+            return new FlagDecision(island.isAllowed(user, flag), Reason.ISLAND_RANK, island);
         }
         // The player is in the world, but not on an island, so general world settings apply
-        if (!flag.isDefaultSetting()) {
-            noGo(e, silent);
-            user = null;
-            return false;
-        } else {
-            user = null;
-            return true;
+        return new FlagDecision(flag.isDefaultSetting(), Reason.WORLD_DEFAULT, null);
+    }
+
+    /**
+     * Gets the context for this event at this location.
+     * On the main thread, the context is shared with the other flag listeners that handle the same event,
+     * so the world and island are only looked up once per event. Off the main thread, a new context is made each time.
+     * @param e - event, or null if there is none
+     * @param loc - location
+     * @return context
+     */
+    protected ProtectionContext getContext(Event e, Location loc) {
+        if (e == null || !primaryThread.getAsBoolean()) {
+            return createContext(e, loc);
+        }
+        ProtectionContext context = lastContext.get();
+        if (context == null || !context.isFor(e, loc)) {
+            context = createContext(e, loc);
+            lastContext = new WeakReference<>(context);
+        }
+        return context;
+    }
+
+    /**
+     * Gets the per-chunk setting flag decisions, shared by the flag listeners
+     * @return the cache, or null if it cannot be used from this thread
+     */
+    protected ChunkSettingCache getSettingCache() {
+        if (!primaryThread.getAsBoolean() || getIslands() == null) {
+            return null;
+        }
+        IslandChunkCache chunkCache = getIslands().getChunkCache();
+        if (chunkCache == null) {
+            return null;
+        }
+        ChunkSettingCache cache = settingCache;
+        if (cache == null || cache.getChunkCache() != chunkCache) {
+            cache = new ChunkSettingCache(chunkCache);
+            settingCache = cache;
+        }
+        return cache;
+    }
+
+    private ProtectionContext createContext(Event e, Location loc) {
+        boolean inIslandWorld = inWorld(loc);
+        Island island = null;
+        if (inIslandWorld) {
+            // Only handling an event counts as using the island, so checks that only read do not keep it loaded
+            island = (e == null ? getIslands().findIslandAt(loc) : getIslands().getIslandAt(loc)).orElse(null);
         }
+        return new ProtectionContext(e, loc, inIslandWorld, island);
     }
 
     /**
@@ -40,7 +40,7 @@ public class BreakBlocksListener extends AbstractFlagListener {
     @EventHandler(priority = EventPriority.LOW)
     public void onBreakHanging(final HangingBreakByEntityEvent e) {
         if (e.getRemover() instanceof Player) {
-            setUser(User.getInstance(e.getRemover())).checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS);
+            checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS, User.getInstance(e.getRemover()));
         }
     }
 
@@ -93,10 +93,14 @@ public class BreakBlocksListener extends AbstractFlagListener {
      */
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled=true)
     public void onVehicleDamageEvent(VehicleDamageEvent e) {
-        if (inWorld(e.getVehicle()) && e.getAttacker() instanceof Player) {
+        if (!(e.getAttacker() instanceof Player)) {
+            return;
+        }
+        ProtectionContext context = getContext(e, e.getVehicle().getLocation());
+        if (context.isInWorld()) {
             User user = User.getInstance((Player) e.getAttacker());
             // Get the island and if present, check the flag, react if required and return
-            getIslands().getIslandAt(e.getVehicle().getLocation()).ifPresent(x -> {
+            context.getIsland().ifPresent(x -> {
                 if (!x.isAllowed(user, Flags.BREAK_BLOCKS)) {
                     e.setCancelled(true);
                     user.sendMessage("protection.protected");
@@ -125,12 +129,12 @@ public class BreakBlocksListener extends AbstractFlagListener {
 
         // Get the attacker
         if (e.getDamager() instanceof Player) {
-            setUser(User.getInstance(e.getDamager())).checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS);
+            checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS, User.getInstance(e.getDamager()));
         } else if (e.getDamager() instanceof Projectile) {
             // Find out who fired the arrow
             Projectile p = (Projectile) e.getDamager();
             if (p.getShooter() instanceof Player) {
-                if (!setUser(User.getInstance((Player)p.getShooter())).checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS)) {
+                if (!checkIsland(e, e.getEntity().getLocation(), Flags.BREAK_BLOCKS, User.getInstance((Player)p.getShooter()))) {
                     e.getEntity().setFireTicks(0);
                     e.getDamager().remove();
                 }
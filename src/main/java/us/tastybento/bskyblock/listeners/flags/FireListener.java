@@ -9,6 +9,7 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
@@ -22,6 +23,7 @@ import org.bukkit.util.BlockIterator;
 import us.tastybento.bskyblock.api.flags.Flag;
 import us.tastybento.bskyblock.api.user.User;
 import us.tastybento.bskyblock.lists.Flags;
+import us.tastybento.bskyblock.managers.island.ChunkSettingCache;
 
 /**
  * Handles fire
@@ -38,12 +40,24 @@ public class FireListener extends AbstractFlagListener {
      * @return - true if cancelled, false if not
      */
     public boolean checkFire(Cancellable e, Location l, Flag flag) {
+        // Chunks that lie entirely inside one island are answered from the cache.
+        // Its entries are checked against the island table and flags versions, so it never needs clearing.
+        ChunkSettingCache cache = getSettingCache();
+        if (cache != null) {
+            int allowed = cache.isAllowed(l.getWorld(), l.getBlockX(), l.getBlockZ(), flag);
+            if (allowed != ChunkSettingCache.UNKNOWN) {
+                boolean cancel = allowed == ChunkSettingCache.DENIED;
+                e.setCancelled(cancel);
+                return cancel;
+            }
+        }
+        ProtectionContext context = getContext(e instanceof Event ? (Event) e : null, l);
         // Check world
-        if (!inWorld(l)) {
+        if (!context.isInWorld()) {
             return false;
         }
         // Check if the island exists and if fire is allowed
-        boolean cancel = getIslands().getIslandAt(l).map(i -> !i.isAllowed(flag)).orElse(!flag.isDefaultSetting());
+        boolean cancel = context.getIsland().map(i -> !i.isAllowed(flag)).orElse(!flag.isDefaultSetting());
 
         e.setCancelled(cancel);
         return cancel;
@@ -132,8 +146,7 @@ public class FireListener extends AbstractFlagListener {
             // Find out who fired it
             if (projectile.getShooter() instanceof Player && projectile.getFireTicks() > 0) {
                 Player shooter = (Player)projectile.getShooter();
-                setUser(User.getInstance(shooter));
-                if (!setUser(User.getInstance(shooter)).checkIsland(e, e.getBlock().getLocation(), Flags.BREAK_BLOCKS)) {
+                if (!checkIsland(e, e.getBlock().getLocation(), Flags.BREAK_BLOCKS, User.getInstance(shooter))) {
                     // Remove the arrow
                     projectile.remove();
                     e.setCancelled(true);
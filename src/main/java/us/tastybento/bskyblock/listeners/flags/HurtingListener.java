@@ -70,12 +70,12 @@ public class HurtingListener extends AbstractFlagListener {
     private void respond(Event event, Entity damager, Flag hurtMobs) {
         // Get the attacker
         if (damager instanceof Player) {
-            setUser(User.getInstance(damager)).checkIsland(event, damager.getLocation(), hurtMobs);
+            checkIsland(event, damager.getLocation(), hurtMobs, User.getInstance(damager));
         } else if (damager instanceof Projectile) {
             // Find out who fired the projectile
             Projectile p = (Projectile) damager;
             if (p.getShooter() instanceof Player) {
-                if (!setUser(User.getInstance((Player)p.getShooter())).checkIsland(event, damager.getLocation(), hurtMobs)) {
+                if (!checkIsland(event, damager.getLocation(), hurtMobs, User.getInstance((Player)p.getShooter()))) {
                     damager.setFireTicks(0);
                     damager.remove();
                 }
@@ -133,7 +133,7 @@ public class HurtingListener extends AbstractFlagListener {
                 }
                 // Monsters being hurt
                 if (entity instanceof Monster || entity instanceof Slime || entity instanceof Squid) {
-                    if (!setUser(User.getInstance(attacker)).checkIsland(e, entity.getLocation(), Flags.HURT_MONSTERS)) {
+                    if (!checkIsland(e, entity.getLocation(), Flags.HURT_MONSTERS, User.getInstance(attacker))) {
                         for (PotionEffect effect : e.getPotion().getEffects()) {
                             entity.removePotionEffect(effect.getType());
                         }
@@ -43,16 +43,16 @@ public class InventoryListener extends AbstractFlagListener {
                 || e.getInventory().getHolder() instanceof Hopper
                 || e.getInventory().getHolder() instanceof Dropper
                 || e.getInventory().getHolder() instanceof ShulkerBox) {
-            setUser(User.getInstance(e.getWhoClicked())).checkIsland(e, e.getInventory().getLocation(), Flags.CHEST);
+            checkIsland(e, e.getInventory().getLocation(), Flags.CHEST, User.getInstance(e.getWhoClicked()));
         }
         else if (e.getInventory().getHolder() instanceof Furnace) {
-            setUser(User.getInstance(e.getWhoClicked())).checkIsland(e, e.getInventory().getLocation(), Flags.FURNACE);
+            checkIsland(e, e.getInventory().getLocation(), Flags.FURNACE, User.getInstance(e.getWhoClicked()));
         }
         else if (e.getInventory().getHolder() instanceof BrewingStand) {
-            setUser(User.getInstance(e.getWhoClicked())).checkIsland(e, e.getInventory().getLocation(), Flags.BREWING);
+            checkIsland(e, e.getInventory().getLocation(), Flags.BREWING, User.getInstance(e.getWhoClicked()));
         }
         else if (e.getInventory().getHolder() instanceof Beacon) {
-            setUser(User.getInstance(e.getWhoClicked())).checkIsland(e, e.getInventory().getLocation(), Flags.BEACON);
+            checkIsland(e, e.getInventory().getLocation(), Flags.BEACON, User.getInstance(e.getWhoClicked()));
         }
     }
 
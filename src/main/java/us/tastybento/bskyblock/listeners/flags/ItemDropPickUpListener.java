@@ -32,7 +32,7 @@ public class ItemDropPickUpListener extends AbstractFlagListener {
     public void onVisitorPickup(EntityPickupItemEvent e) {
         if (e.getEntity() instanceof Player) {
             // Disallow, but don't tell the player an error
-            setUser(User.getInstance(e.getEntity())).checkIsland(e, e.getItem().getLocation(), Flags.ITEM_PICKUP, true);
+            checkIsland(e, e.getItem().getLocation(), Flags.ITEM_PICKUP, User.getInstance(e.getEntity()), true);
         }
     }
 }
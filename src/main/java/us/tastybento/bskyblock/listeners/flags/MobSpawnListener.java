@@ -3,8 +3,7 @@
  */
 package us.tastybento.bskyblock.listeners.flags;
 
-import java.util.Optional;
-
+import org.bukkit.Location;
 import org.bukkit.entity.Animals;
 import org.bukkit.entity.Monster;
 import org.bukkit.entity.Slime;
@@ -13,8 +12,9 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 
-import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.api.flags.Flag;
 import us.tastybento.bskyblock.lists.Flags;
+import us.tastybento.bskyblock.managers.island.ChunkSettingCache;
 
 /**
  * Handles natural mob spawning.
@@ -31,31 +31,44 @@ public class MobSpawnListener extends AbstractFlagListener {
      */
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public boolean onNaturalMobSpawn(CreatureSpawnEvent e) {
-        // If not in the right world, return
-        if (!inWorld(e.getEntity())) {
+        // Deal with natural spawning
+        SpawnReason reason = e.getSpawnReason();
+        if (reason != SpawnReason.NATURAL
+                && reason != SpawnReason.JOCKEY
+                && reason != SpawnReason.CHUNK_GEN
+                && reason != SpawnReason.DEFAULT
+                && reason != SpawnReason.MOUNT
+                && reason != SpawnReason.NETHER_PORTAL) {
             return false;
         }
-        // Deal with natural spawning
-        if (e.getSpawnReason().equals(SpawnReason.NATURAL)
-                || e.getSpawnReason().equals(SpawnReason.JOCKEY)
-                || e.getSpawnReason().equals(SpawnReason.CHUNK_GEN)
-                || e.getSpawnReason().equals(SpawnReason.DEFAULT)
-                || e.getSpawnReason().equals(SpawnReason.MOUNT)
-                || e.getSpawnReason().equals(SpawnReason.NETHER_PORTAL)) {
-            
-            Optional<Island> island = getIslands().getIslandAt(e.getLocation());
-            // Cancel the event if these are true
-            if ((e.getEntity() instanceof Monster || e.getEntity() instanceof Slime)) {
-                boolean cancel = island.map(i -> !i.isAllowed(Flags.MONSTER_SPAWN)).orElse(!Flags.MONSTER_SPAWN.isDefaultSetting());
-                e.setCancelled(cancel);
-                return cancel;
-            } else if (e.getEntity() instanceof Animals) {
-                boolean cancel = island.map(i -> !i.isAllowed(Flags.ANIMAL_SPAWN)).orElse(!Flags.ANIMAL_SPAWN.isDefaultSetting());
+        Flag flag;
+        if (e.getEntity() instanceof Monster || e.getEntity() instanceof Slime) {
+            flag = Flags.MONSTER_SPAWN;
+        } else if (e.getEntity() instanceof Animals) {
+            flag = Flags.ANIMAL_SPAWN;
+        } else {
+            return false;
+        }
+        Location l = e.getEntity().getLocation();
+        // Chunks that lie entirely inside one island are answered from the cache
+        ChunkSettingCache cache = getSettingCache();
+        if (cache != null) {
+            int allowed = cache.isAllowed(l.getWorld(), l.getBlockX(), l.getBlockZ(), flag);
+            if (allowed != ChunkSettingCache.UNKNOWN) {
+                boolean cancel = allowed == ChunkSettingCache.DENIED;
                 e.setCancelled(cancel);
                 return cancel;
             }
         }
-        return false;
+        ProtectionContext context = getContext(e, l);
+        // If not in the right world, return
+        if (!context.isInWorld()) {
+            return false;
+        }
+        // Cancel the event if the flag is not allowed
+        boolean cancel = context.getIsland().map(i -> !i.isAllowed(flag)).orElse(!flag.isDefaultSetting());
+        e.setCancelled(cancel);
+        return cancel;
     }
 
 }
@@ -55,12 +55,12 @@ public class PVPListener extends AbstractFlagListener {
     private void respond(Event event, Entity damager, Flag flag) {
         // Get the attacker
         if (damager instanceof Player) {
-            setUser(User.getInstance(damager)).checkIsland(event, damager.getLocation(), flag);
+            checkIsland(event, damager.getLocation(), flag, User.getInstance(damager));
         } else if (damager instanceof Projectile) {
             // Find out who fired the arrow
             Projectile p = (Projectile) damager;
             if (p.getShooter() instanceof Player) {
-                if (!setUser(User.getInstance((Player)p.getShooter())).checkIsland(event, damager.getLocation(), flag)) {
+                if (!checkIsland(event, damager.getLocation(), flag, User.getInstance((Player)p.getShooter()))) {
                     damager.setFireTicks(0);
                     damager.remove();
                 }
@@ -110,7 +110,7 @@ public class PVPListener extends AbstractFlagListener {
                 }
                 // PVP?
                 if (entity instanceof Player) {
-                    if (!setUser(User.getInstance(attacker)).checkIsland(e, entity.getLocation(), flag)) {
+                    if (!checkIsland(e, entity.getLocation(), flag, User.getInstance(attacker))) {
                         for (PotionEffect effect : e.getPotion().getEffects()) {
                             entity.removePotionEffect(effect.getType());
                         }
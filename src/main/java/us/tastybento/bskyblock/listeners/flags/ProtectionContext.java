@@ -0,0 +1,96 @@
+package us.tastybento.bskyblock.listeners.flags;
+
+import java.util.Optional;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.Event;
+
+import us.tastybento.bskyblock.api.user.User;
+import us.tastybento.bskyblock.database.objects.Island;
+
+/**
+ * What the flag listeners need to know about an event at a location: whether it is in an island world,
+ * the island there and the player in the event. It is worked out once and shared by every flag
+ * listener that handles the same event.
+ *
+ * @author tastybento
+ *
+ */
+public class ProtectionContext {
+
+    private final Event event;
+    private final World world;
+    private final int x;
+    private final int z;
+    private final boolean inWorld;
+    private final Island island;
+    private User eventUser;
+    private boolean eventUserResolved;
+
+    /**
+     * @param event - event, or null if there is none
+     * @param location - location, or null if there is none
+     * @param inWorld - true if the location is in an island world
+     * @param island - island at the location, or null if there is none
+     */
+    public ProtectionContext(Event event, Location location, boolean inWorld, Island island) {
+        this.event = event;
+        this.world = location == null ? null : location.getWorld();
+        this.x = location == null ? 0 : location.getBlockX();
+        this.z = location == null ? 0 : location.getBlockZ();
+        this.inWorld = inWorld;
+        this.island = island;
+    }
+
+    /**
+     * @param e - event
+     * @param location - location
+     * @return true if this context was made for this event at this location
+     */
+    boolean isFor(Event e, Location location) {
+        if (e != event) {
+            return false;
+        }
+        if (location == null) {
+            return world == null;
+        }
+        return location.getWorld() == world && location.getBlockX() == x && location.getBlockZ() == z;
+    }
+
+    /**
+     * @return true if the location is in an island world
+     */
+    public boolean isInWorld() {
+        return inWorld;
+    }
+
+    /**
+     * @return the island at the location
+     */
+    public Optional<Island> getIsland() {
+        return Optional.ofNullable(island);
+    }
+
+    /**
+     * @return true if the player in the event has been looked up
+     */
+    boolean isEventUserResolved() {
+        return eventUserResolved;
+    }
+
+    /**
+     * @return the player in the event, or null if there is none
+     */
+    User getEventUser() {
+        return eventUser;
+    }
+
+    /**
+     * @param eventUser - the player in the event, or null if there is none
+     */
+    void setEventUser(User eventUser) {
+        this.eventUser = eventUser;
+        this.eventUserResolved = true;
+    }
+}
@@ -20,6 +20,7 @@ import org.bukkit.event.entity.ExplosionPrimeEvent;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.util.ExplosionFilter;
 import us.tastybento.bskyblock.util.Util;
 
 /**
@@ -86,12 +87,16 @@ public class FlyingMobEvents implements Listener {
         if (e.getEntity() == null || !Util.inWorld(e.getEntity())) {
             return;
         }
-        if (mobSpawnInfo.containsKey(e.getEntity())) {
+        Island origin = mobSpawnInfo.get(e.getEntity());
+        if (origin != null) {
             // We know about this mob
-            if (!mobSpawnInfo.get(e.getEntity()).inIslandSpace(e.getLocation())) {
+            if (!origin.inIslandSpace(e.getLocation())) {
                 // Cancel the explosion and block damage
                 e.blockList().clear();
                 e.setCancelled(true);
+            } else {
+                // Keep the damage on the mob's own island if the explosion reaches over the edge
+                ExplosionFilter.removeProtected(e.blockList(), plugin.getIslands(), island -> island == origin);
             }
         }
     }
@@ -1,9 +1,15 @@
 package us.tastybento.bskyblock.managers;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.event.Listener;
 
 import us.tastybento.bskyblock.BSkyBlock;
@@ -16,19 +22,27 @@ import us.tastybento.bskyblock.lists.Flags;
  */
 public class FlagsManager {
 
+    // Only registration numbers flags
+    private static final Flag.OrdinalSetter ORDINALS = Flag.ordinalSetter();
+
     private BSkyBlock plugin;
+    /**
+     * Registered flags. The index of a flag in this list is its ordinal.
+     */
     private List<Flag> flags = new ArrayList<>();
+    private Map<String, Flag> flagsByID = new HashMap<>();
+    private Map<Material, Flag> flagsByIcon = new HashMap<>();
 
     /**
      * Stores the flag listeners that have already been registered into Bukkit's API to avoid duplicates.
      */
-    private ArrayList<Listener> registeredListeners = new ArrayList<>();
+    private Set<Listener> registeredListeners = new HashSet<>();
 
     public FlagsManager(BSkyBlock plugin) {
         this.plugin = plugin;
 
         // Register default flags
-        Flags.values().forEach(this::registerFlag);
+        registerFlags(Flags.values());
     }
 
     /**
@@ -38,22 +52,36 @@ public class FlagsManager {
      */
     public boolean registerFlag(Flag flag) {
         // Check in case the flag id or icon already exists
-        for (Flag fl : flags) {
-            if (fl.getID().equals(flag.getID()) || fl.getIcon().equals(flag.getIcon())) {
-                return false;
-            }
+        if (flagsByID.containsKey(flag.getID()) || flagsByIcon.containsKey(flag.getIcon())) {
+            return false;
         }
+        // Flags are numbered in the order they are registered so islands can keep their ranks in an array
+        ORDINALS.setOrdinal(flag, flags.size());
         flags.add(flag);
+        flagsByID.put(flag.getID(), flag);
+        flagsByIcon.put(flag.getIcon(), flag);
         // If there is a listener which is not already registered, register it into Bukkit.
         flag.getListener().ifPresent(l -> {
-            if (!registeredListeners.contains(l)) {
+            if (registeredListeners.add(l)) {
                 Bukkit.getServer().getPluginManager().registerEvents(l, plugin);
-                registeredListeners.add(l);
             }
         });
         return true;
     }
 
+    /**
+     * Register many flags with BSkyBlock, e.g., all the flags of an addon
+     * @param flags flags to be registered
+     * @return true if all of them were registered, false if any were not, e.g., because one with the same ID already exists
+     */
+    public boolean registerFlags(Collection<Flag> flags) {
+        boolean result = true;
+        for (Flag flag : flags) {
+            result &= registerFlag(flag);
+        }
+        return result;
+    }
+
     /**
      * @return list of all flags
      */
@@ -67,6 +95,15 @@ public class FlagsManager {
      * @return Flag or null if not known
      */
     public Flag getFlagByID(String id) {
-        return flags.stream().filter(flag -> flag.getID().equals(id)).findFirst().orElse(null);
+        return flagsByID.get(id);
+    }
+
+    /**
+     * Get flag by ordinal
+     * @param ordinal the number given to the flag when it was registered
+     * @return Flag or null if not known
+     */
+    public Flag getFlagByOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < flags.size() ? flags.get(ordinal) : null;
     }
 }
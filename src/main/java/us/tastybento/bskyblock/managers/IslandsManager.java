@@ -1,14 +1,20 @@
 package us.tastybento.bskyblock.managers;
 
-import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Boat;
@@ -18,6 +24,7 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.MaterialData;
 import org.bukkit.material.SimpleAttachableMaterialData;
 import org.bukkit.material.TrapDoor;
+import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 
 import us.tastybento.bskyblock.BSkyBlock;
@@ -25,9 +32,10 @@ import us.tastybento.bskyblock.Constants;
 import us.tastybento.bskyblock.api.user.User;
 import us.tastybento.bskyblock.database.BSBDatabase;
 import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.database.objects.IslandSummary;
 import us.tastybento.bskyblock.managers.island.IslandCache;
+import us.tastybento.bskyblock.managers.island.IslandChunkCache;
 import us.tastybento.bskyblock.util.DeleteIslandChunks;
-import us.tastybento.bskyblock.util.Util;
 import us.tastybento.bskyblock.util.teleport.SafeTeleportBuilder;
 
 /**
@@ -119,6 +127,11 @@ public class IslandsManager {
     private Island spawn;
 
     private BSBDatabase<Island> handler;
+    // Island index used when islands are loaded lazily
+    private BSBDatabase<IslandSummary> summaryHandler;
+    private BukkitTask evictionTask;
+    // Islands whose details are being loaded in the background
+    private final Set<Island> hydrating = ConcurrentHashMap.newKeySet();
 
     private Location last;
     // Metrics data
@@ -126,12 +139,18 @@ public class IslandsManager {
 
     // Island Cache
     private IslandCache islandCache;
+    // Loaded chunks that are entirely inside an island
+    private IslandChunkCache chunkCache;
+    // The chunk table can only be used on the main thread
+    private BooleanSupplier primaryThread = Bukkit::isPrimaryThread;
 
     public IslandsManager(BSkyBlock plugin){
         this.plugin = plugin;
         // Set up the database handler to store and retrieve Island classes
         handler = new BSBDatabase<>(plugin, Island.class);
+        summaryHandler = new BSBDatabase<>(plugin, IslandSummary.class);
         islandCache = new IslandCache();
+        chunkCache = new IslandChunkCache(islandCache);
         spawn = null;
     }
 
@@ -228,7 +247,9 @@ public class IslandsManager {
      * @return Island
      */
     public Island createIsland(Location location, UUID owner){
-        return islandCache.createIsland(new Island(location, owner, plugin.getSettings().getIslandProtectionRange()));
+        Island island = islandCache.createIsland(new Island(location, owner, plugin.getSettings().getIslandProtectionRange()));
+        chunkCache.addIsland(island);
+        return island;
     }
 
     /**
@@ -247,9 +268,13 @@ public class IslandsManager {
             // Remove players from island
             removePlayersFromIsland(island);
             // Remove island from the cache
+            chunkCache.removeIsland(island);
             islandCache.deleteIslandFromCache(island);
-            // Remove the island from the database
+            // Remove the island from the database. The index only has entries when islands are loaded lazily.
             handler.deleteObject(island);
+            if (plugin.getSettings().isLazyIslandLoading()) {
+                summaryHandler.deleteObject(new IslandSummary(island));
+            }
             // Remove blocks from world
             new DeleteIslandChunks(plugin, island);
         }
@@ -288,25 +313,83 @@ public class IslandsManager {
         return islandCache.size();
     }
 
+    /**
+     * Checks that the island cache player indexes agree with each other
+     * @return list of inconsistencies found, empty if there are none
+     */
+    public List<String> checkCache() {
+        return islandCache.checkPlayerIndexes();
+    }
+
+    /**
+     * Used for unit testing only to say which thread is the main thread
+     * @param primaryThread - returns true on the main thread
+     */
+    public void setPrimaryThread(BooleanSupplier primaryThread) {
+        this.primaryThread = primaryThread;
+    }
+
+    /**
+     * @return the table of loaded chunks that are entirely inside an island
+     */
+    public IslandChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
     /**
      * Gets the island for this player. If they are in a team, the team island is returned
      * @param uuid - UUID
      * @return Island or null
      */
     public Island getIsland(UUID uuid){
-        return islandCache.get(uuid);
+        return touch(islandCache.get(uuid));
     }
 
     /**
-     * Returns the island at the x,z location or null if there is none.
+     * Returns the island at the x,z location in world or null if there is none.
      * This includes the full island space, not just the protected area.
      *
+     * @param world - world
      * @param x - x coordinate
      * @param z - z coordinate
      * @return Island or null
      */
-    public Island getIslandAt(int x, int z) {
-        return islandCache.getIslandAt(x,z);
+    public Island getIslandAt(World world, int x, int z) {
+        return touch(islandCache.getIslandAt(world, x, z));
+    }
+
+    /**
+     * Returns the islands in world whose island space intersects the box.
+     * The box includes its bounds.
+     * @param world - world
+     * @param minX - min x of the box
+     * @param minZ - min z of the box
+     * @param maxX - max x of the box
+     * @param maxZ - max z of the box
+     * @return list of islands, empty if there are none
+     */
+    public List<Island> getIslandsInBox(World world, int minX, int minZ, int maxX, int maxZ) {
+        return islandCache.getIslandsInBox(world, minX, minZ, maxX, maxZ);
+    }
+
+    /**
+     * Returns the islands whose center is within radius blocks of the location, horizontally
+     * @param location - the location
+     * @param radius - radius in blocks
+     * @return list of islands, empty if there are none
+     */
+    public List<Island> getIslandsInRadius(Location location, int radius) {
+        return islandCache.getIslandsInRadius(location.getWorld(), location.getBlockX(), location.getBlockZ(), radius);
+    }
+
+    /**
+     * Returns the islands with the closest centers to the location, closest first
+     * @param location - the location
+     * @param count - maximum number of islands to return
+     * @return list of up to count islands, empty if there are none
+     */
+    public List<Island> getNearestIslands(Location location, int count) {
+        return islandCache.getNearestIslands(location.getWorld(), location.getBlockX(), location.getBlockZ(), count);
     }
 
     /**
@@ -317,18 +400,52 @@ public class IslandsManager {
      * @return Island object
      */
     public Optional<Island> getIslandAt(Location location) {
+        return findIslandAt(location).map(this::touch);
+    }
+
+    /**
+     * Same as {@link #getIslandAt(Location)}, but the island is not marked as used and its details are not loaded,
+     * so looking it up does not keep it loaded. Use it for checks that only read the island.
+     *
+     * @param location - the location
+     * @return Island object
+     */
+    public Optional<Island> findIslandAt(Location location) {
         if (location == null) {
             return Optional.empty();
         }
         // World check
-        if (!Util.inWorld(location)) {
+        if (!islandCache.isIslandWorld(location.getWorld())) {
             return Optional.empty();
         }
         // Check if it is spawn
         if (spawn != null && spawn.onIsland(location)) {
             return Optional.of(spawn);
         }
-        return Optional.ofNullable(getIslandAt(location.getBlockX(), location.getBlockZ()));
+        // Try the loaded chunk table first
+        if (primaryThread.getAsBoolean()) {
+            Island island = chunkCache.get(location.getWorld(), location.getBlockX(), location.getBlockZ());
+            if (island != null) {
+                return Optional.of(island);
+            }
+        }
+        return Optional.ofNullable(islandCache.getIslandAt(location));
+    }
+
+    /**
+     * Marks an island that has been looked up as used. If only its index entry is loaded,
+     * the rest is loaded in the background so it is ready when it is needed.
+     * @param island - island, or null
+     * @return island
+     */
+    private Island touch(Island island) {
+        if (island != null) {
+            island.markUsed();
+            if (!island.isHydrated()) {
+                hydrateIslandAsync(island);
+            }
+        }
+        return island;
     }
 
     /**
@@ -627,13 +744,190 @@ public class IslandsManager {
     public void load(){
         islandCache.clear();
         spawn = null;
+        // Each island world has its own index
+        addIslandWorld(plugin.getIslandWorldManager().getIslandWorld());
+        if (plugin.getSettings().isNetherIslands()) {
+            addIslandWorld(plugin.getIslandWorldManager().getNetherWorld());
+        }
+        if (plugin.getSettings().isEndIslands()) {
+            addIslandWorld(plugin.getIslandWorldManager().getEndWorld());
+        }
         try {
-            for (Island island : handler.loadObjects()) {
-                islandCache.addIsland(island);
+            if (plugin.getSettings().isLazyIslandLoading()) {
+                islandCache.addIslands(this::loadIslandIndex);
+                if (evictionTask == null) {
+                    long period = Math.max(1, plugin.getSettings().getIslandIdleTime()) * 60L * 20L;
+                    evictionTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::evictIdleIslands, period, period);
+                }
+            } else {
+                islandCache.addIslands(handler::loadObjects);
+                dropIslandIndex();
             }
+            // Islands that were just loaded have nothing to save
+            islandCache.getIslands().forEach(island -> island.setDirty(false));
         } catch (Exception e) {
             plugin.getLogger().severe(()->"Could not load islands to cache! " + e.getMessage());
         }
+        // Add chunks that are already loaded
+        chunkCache.clear();
+        for (World world : islandCache.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                chunkCache.addChunk(chunk);
+            }
+        }
+    }
+
+    /**
+     * The index is only kept up to date when islands are loaded lazily, so any old one is removed once.
+     * Only the ids are read, and once it has been removed there is nothing to read.
+     */
+    private void dropIslandIndex() {
+        Set<String> ids = summaryHandler.loadUniqueIds();
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        plugin.getLogger().info(() -> "Removing the island index, as islands are not loaded lazily");
+        for (String id : ids) {
+            IslandSummary summary = new IslandSummary();
+            summary.setUniqueId(id);
+            summaryHandler.deleteObject(summary);
+        }
+    }
+
+    /**
+     * Loads the island index and makes islands that only have their index entry loaded.
+     * If there is no index yet, all the islands are loaded and the index is made from them.
+     * Islands and their index entries are saved separately, so the index is checked against the ids
+     * of the islands, and islands that are missing from it are loaded whole and added to it.
+     * @param consumer - receives each island as it is loaded
+     */
+    private void loadIslandIndex(Consumer<Island> consumer) {
+        Set<String> indexed = new HashSet<>();
+        summaryHandler.loadObjects(summary -> {
+            indexed.add(summary.getUniqueId());
+            consumer.accept(fromIndex(summary));
+        });
+        if (indexed.isEmpty()) {
+            handler.loadObjects(island -> {
+                summaryHandler.saveObjectAsync(new IslandSummary(island));
+                consumer.accept(island);
+            });
+            return;
+        }
+        Set<String> ids = handler.loadUniqueIds();
+        if (ids == null) {
+            plugin.getLogger().warning("Could not check the island index against the islands");
+            return;
+        }
+        ids.removeAll(indexed);
+        for (String id : ids) {
+            Island island = handler.loadObject(id);
+            if (island != null) {
+                summaryHandler.saveObjectAsync(new IslandSummary(island));
+                consumer.accept(island);
+            }
+        }
+        if (!ids.isEmpty()) {
+            plugin.getLogger().warning(() -> ids.size() + " islands were missing from the island index and have been added to it");
+        }
+    }
+
+    /**
+     * Makes an island from its index entry. Entries from an older version of the index
+     * are made again from the whole island.
+     * @param summary - index entry
+     * @return island
+     */
+    private Island fromIndex(IslandSummary summary) {
+        if (summary.getVersion() < IslandSummary.VERSION) {
+            Island island = handler.loadObject(summary.getUniqueId());
+            if (island != null) {
+                summaryHandler.saveObjectAsync(new IslandSummary(island));
+                return island;
+            }
+        }
+        return summary.toIsland();
+    }
+
+    /**
+     * Loads the rest of an island that only has its index entry loaded, on another thread.
+     * It is only loaded once if this is called again before it has finished.
+     * @param island - island
+     */
+    public void hydrateIslandAsync(Island island) {
+        if (hydrating.add(island)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    hydrateIsland(island);
+                } finally {
+                    hydrating.remove(island);
+                }
+            });
+        }
+    }
+
+    /**
+     * Loads the rest of an island that only has its index entry loaded
+     * @param island - island
+     */
+    public void hydrateIsland(Island island) {
+        synchronized (island) {
+            if (!island.isHydrated()) {
+                Island details = handler.loadObject(island.getUniqueId());
+                if (details == null) {
+                    plugin.getLogger().warning(() -> "Could not load island " + island.getUniqueId() + " - using defaults");
+                }
+                island.hydrate(details);
+            }
+        }
+    }
+
+    /**
+     * Saves and unloads the details of islands that have not been looked up since the last run.
+     * Islands that have changed are queued to be saved and unloaded on a later run, once they have been written.
+     * Saving an island does not count as using it.
+     */
+    void evictIdleIslands() {
+        for (Island island : islandCache.getIslands()) {
+            if (island.isHydrated() && !island.isSpawn() && !island.clearUsed()) {
+                synchronized (island) {
+                    if (island.isDirty()) {
+                        queueIsland(island);
+                    } else if (!handler.isPending(island)) {
+                        island.dehydrate();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the island and, if islands are loaded lazily, its index entry to be saved.
+     * Islands that only have their index entry loaded have not changed, so they are not saved.
+     * If the save fails, the island is marked as changed again so the next save retries it.
+     * @param island - island
+     */
+    private void queueIsland(Island island) {
+        if (!island.isHydrated()) {
+            return;
+        }
+        // Cleared first so that changes made while saving mark the island again
+        island.setDirty(false);
+        if (plugin.getSettings().isLazyIslandLoading()) {
+            summaryHandler.saveObjectAsync(new IslandSummary(island));
+        }
+        handler.saveObjectAsync(island);
+    }
+
+    /**
+     * Adds a world that has islands in it, e.g., an extra dimension added by an addon.
+     * Every island is in every island world at the same x,z coordinates.
+     * @param world - world
+     */
+    public void addIslandWorld(World world) {
+        if (world != null) {
+            islandCache.addWorld(world);
+        }
     }
 
     /**
@@ -739,31 +1033,20 @@ public class IslandsManager {
     }
 
     /**
-     * Save the islands to the database
-     * @param async - if true, saving will be done async
+     * Save the islands that changed since they were last loaded or saved to the database.
+     * The islands are queued and written by the database writer thread.
+     * @param async - if true, this returns once the islands are queued, otherwise once they are written
      */
     public void save(boolean async){
-        Collection<Island> collection = islandCache.getIslands();
-        if(async){
-            Runnable save = () -> {
-                for(Island island : collection){
-                    try {
-                        handler.saveObject(island);
-                    } catch (Exception e) {
-                        plugin.getLogger().severe(()->"Could not save island to datavase when running async! " + e.getMessage());
-                    }
-                }
-            };
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, save);
-        } else {
-            for(Island island : collection){
-                try {
-                    handler.saveObject(island);
-                } catch (Exception e) {
-                    plugin.getLogger().severe(()->"Could not save island to datavase when running sync! " + e.getMessage());
-                }
+        for(Island island : islandCache.getIslands()){
+            if (island.isDirty()) {
+                queueIsland(island);
             }
         }
+        if (!async) {
+            handler.flush();
+            summaryHandler.flush();
+        }
     }
 
     /**
@@ -804,7 +1087,12 @@ public class IslandsManager {
     }
 
     public void shutdown(){
+        if (evictionTask != null) {
+            evictionTask.cancel();
+            evictionTask = null;
+        }
         save(false);
+        chunkCache.clear();
         islandCache.clear();
         handler.close();
     }
@@ -1,7 +1,5 @@
 package us.tastybento.bskyblock.managers;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -50,20 +48,34 @@ public class PlayersManager{
     public void load(){
         playerCache.clear();
         inTeleport.clear();
-        handler.loadObjects().forEach(p -> playerCache.put(p.getPlayerUUID(), p));
+        handler.loadObjects(p -> {
+            p.setDirty(false);
+            playerCache.put(p.getPlayerUUID(), p);
+        });
     }
 
     /**
-     * Save all players
-     * @param async - if true, save async
+     * Save all players that changed since they were last loaded or saved.
+     * The players are queued and written by the database writer thread.
+     * @param async - if true, this returns once the players are queued, otherwise once they are written
      */
     public void save(boolean async){
-        Collection<Players> set = Collections.unmodifiableCollection(playerCache.values());
-        if(async) {
-            Runnable save = () -> set.forEach(handler::saveObject);
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, save);
-        } else {
-            set.forEach(handler::saveObject);
+        playerCache.values().forEach(this::saveIfDirty);
+        if (!async) {
+            handler.flush();
+        }
+    }
+
+    /**
+     * Queues the player to be saved if they changed since they were last loaded or saved.
+     * If the save fails, the player is marked as changed again so the next save retries it.
+     * @param player - player
+     */
+    private void saveIfDirty(Players player) {
+        if (player.isDirty()) {
+            // Cleared first so that changes made while saving mark the player again
+            player.setDirty(false);
+            handler.saveObjectAsync(player);
         }
     }
 
@@ -97,6 +109,9 @@ public class PlayersManager{
             // If the player is in the database, load it, otherwise create a new player
             if (handler.objectExists(playerUUID.toString())) {
                     player = handler.loadObject(playerUUID.toString());
+                    if (player != null) {
+                        player.setDirty(false);
+                    }
             } else {
                 player = new Players(plugin, playerUUID);
             }
@@ -501,12 +516,12 @@ public class PlayersManager{
     }
 
     /**
-     * Saves the player to the database
+     * Queues the player to be saved to the database if they changed since they were last loaded or saved
      * @param playerUUID - the player's UUID
      */
     public void save(UUID playerUUID) {
         if (playerCache.containsKey(playerUUID)) {
-            handler.saveObject(playerCache.get(playerUUID));
+            saveIfDirty(playerCache.get(playerUUID));
         }
     }
 
@@ -0,0 +1,128 @@
+package us.tastybento.bskyblock.managers.island;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import us.tastybento.bskyblock.api.flags.Flag;
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.util.LongObjectMap;
+
+/**
+ * Setting flag decisions per chunk, for chunks that lie entirely inside one island.
+ * Once a chunk's decision for a flag is known, later checks in that chunk are one array read.
+ * Entries are checked against the island table version and the island's flags version, so
+ * they are made again after islands are created or deleted, or after the island's flags change.
+ * This class must only be used from the main server thread.
+ *
+ * @author tastybento
+ *
+ */
+public class ChunkSettingCache {
+
+    /**
+     * The chunk is not entirely inside one island, so the flag must be checked the normal way
+     */
+    public static final int UNKNOWN = -1;
+    public static final int DENIED = 0;
+    public static final int ALLOWED = 1;
+
+    // Values stored in the decision arrays. Zero means not worked out yet.
+    private static final byte STORED_DENIED = 1;
+    private static final byte STORED_ALLOWED = 2;
+
+    private final IslandChunkCache chunkCache;
+    private final Map<World, LongObjectMap<Entry>> chunks = new HashMap<>();
+
+    private static class Entry {
+        private final Island island;
+        private final int tableVersion;
+        private final int flagsVersion;
+        private byte[] decisions;
+
+        Entry(Island island, int tableVersion, int size) {
+            this.island = island;
+            this.tableVersion = tableVersion;
+            this.flagsVersion = island.getFlagsVersion();
+            this.decisions = new byte[size];
+        }
+    }
+
+    /**
+     * @param chunkCache - table of chunks that lie entirely inside one island
+     */
+    public ChunkSettingCache(IslandChunkCache chunkCache) {
+        this.chunkCache = chunkCache;
+    }
+
+    /**
+     * Checks if a setting flag is allowed at this block
+     * @param world - world
+     * @param x - block x coordinate
+     * @param z - block z coordinate
+     * @param flag - setting flag
+     * @return {@link #ALLOWED}, {@link #DENIED} or {@link #UNKNOWN} if the chunk is not entirely inside one island
+     */
+    public int isAllowed(World world, int x, int z, Flag flag) {
+        int ordinal = flag.getOrdinal();
+        if (ordinal < 0) {
+            return UNKNOWN;
+        }
+        LongObjectMap<Entry> table = chunks.get(world);
+        if (table == null) {
+            table = new LongObjectMap<>();
+            chunks.put(world, table);
+        }
+        long key = LongObjectMap.pack(x >> 4, z >> 4);
+        Entry entry = table.get(key);
+        if (entry == null || entry.tableVersion != chunkCache.getVersion() || entry.flagsVersion != entry.island.getFlagsVersion()) {
+            Island island = chunkCache.get(world, x, z);
+            if (island == null) {
+                if (entry != null) {
+                    table.remove(key);
+                }
+                return UNKNOWN;
+            }
+            entry = new Entry(island, chunkCache.getVersion(), ordinal + 1);
+            table.put(key, entry);
+        }
+        if (ordinal >= entry.decisions.length) {
+            byte[] grown = new byte[ordinal + 1];
+            System.arraycopy(entry.decisions, 0, grown, 0, entry.decisions.length);
+            entry.decisions = grown;
+        }
+        byte decision = entry.decisions[ordinal];
+        if (decision == 0) {
+            decision = entry.island.isAllowed(flag) ? STORED_ALLOWED : STORED_DENIED;
+            entry.decisions[ordinal] = decision;
+        }
+        return decision == STORED_ALLOWED ? ALLOWED : DENIED;
+    }
+
+    /**
+     * Drops the decisions for this chunk
+     * @param chunk - chunk that was unloaded
+     */
+    public void removeChunk(Chunk chunk) {
+        LongObjectMap<Entry> table = chunks.get(chunk.getWorld());
+        if (table != null) {
+            table.remove(LongObjectMap.pack(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    /**
+     * Drops all decisions
+     */
+    public void clear() {
+        chunks.clear();
+    }
+
+    /**
+     * @return the chunk table this cache uses
+     */
+    public IslandChunkCache getChunkCache() {
+        return chunkCache;
+    }
+}
@@ -1,107 +1,206 @@
 package us.tastybento.bskyblock.managers.island;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import org.bukkit.World;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.database.objects.Island;
-import us.tastybento.bskyblock.util.Util;
+import us.tastybento.bskyblock.util.ConcurrentLongObjectMap;
 
+/**
+ * Holds all the islands in memory.
+ * Reads are lock-free and may be done from any thread, e.g., async chunk scans or database saves.
+ * Writes are serialized. The center index and spatial grid can be read while they are written,
+ * and adding or deleting an island only touches that island's entries, so writes do not get slower
+ * as the number of islands grows. Only the set of island worlds is copied on write, when a world is added.
+ * Islands are in every island world at the same x,z, so all the island worlds share one spatial grid.
+ */
 public class IslandCache {
     private BSkyBlock plugin = BSkyBlock.getInstance();
-    private BiMap<Location, Island> islandsByLocation;
+    // Islands by packed center key, see IslandKeys
+    private final ConcurrentLongObjectMap<Island> islandsByCenter;
+    // Ids of the worlds that have islands, by world UUID. 0 is used for islands without a world.
+    private Map<UUID, Integer> worldIds;
     /**
      * Every player who is associated with an island is in this map.
      */
-    private HashMap<UUID, Island> islandsByUUID;
-    // 2D islandGrid of islands, x,z
-    private TreeMap<Integer, TreeMap<Integer, Island>> islandGrid = new TreeMap<>();
+    private Map<UUID, Island> islandsByUUID;
+    /**
+     * Reverse of islandsByUUID - the players associated with each island.
+     * Islands are compared by identity.
+     */
+    private Map<Island, Set<UUID>> uuidsByIsland;
+    // Spatial index of islands, x,z. Shared by all the island worlds.
+    private volatile IslandGrid islandGrid;
+    // Worlds that have islands in them. The set is never modified after it is published.
+    private volatile Set<World> islandWorlds;
 
     public IslandCache() {
-        islandsByLocation = HashBiMap.create();
-        islandsByUUID = new HashMap<>();
+        islandsByCenter = new ConcurrentLongObjectMap<>();
+        worldIds = new ConcurrentHashMap<>();
+        islandsByUUID = new ConcurrentHashMap<>();
+        uuidsByIsland = new ConcurrentHashMap<>();
+        islandGrid = newGrid();
+        islandWorlds = Collections.emptySet();
+    }
+
+    private IslandGrid newGrid() {
+        return new IslandGrid(plugin.getSettings().getIslandDistance(),
+                plugin.getSettings().getIslandXOffset() + plugin.getSettings().getIslandStartX(),
+                plugin.getSettings().getIslandZOffset() + plugin.getSettings().getIslandStartZ());
     }
 
     /**
      * Adds an island to the grid
      * @param island
      */
-    public void addIsland(Island island) {
-        islandsByLocation.put(island.getCenter(), island);
-        islandsByUUID.put(island.getOwner(), island);
+    public synchronized void addIsland(Island island) {
+        islandsByCenter.put(registerCenterKey(island.getCenter()), island);
+        if (island.getOwner() != null) {
+            putPlayer(island.getOwner(), island);
+        }
         for (UUID member: island.getMemberSet()) {
-            islandsByUUID.put(member, island);
+            putPlayer(member, island);
         }
         addToGrid(island);
     }
 
-    public void addPlayer(UUID playerUUID, Island teamIsland) {
-        islandsByUUID.put(playerUUID, teamIsland);
+    /**
+     * Adds islands to the grid. Use this when loading many islands.
+     * @param islands - islands to add
+     */
+    public void addIslands(Collection<Island> islands) {
+        addIslands(islands::forEach);
+    }
+
+    /**
+     * Adds islands to the grid as the source supplies them. Use this when streaming many islands from the database.
+     * @param source - passes each island to add to the consumer it is given
+     */
+    public synchronized void addIslands(Consumer<Consumer<Island>> source) {
+        source.accept(this::addIsland);
     }
 
     /**
-     * Adds an island to the grid register
+     * Adds an island world. The world uses the same spatial grid as the other island worlds.
+     * @param world - island world
+     */
+    public synchronized void addWorld(World world) {
+        if (islandWorlds.contains(world)) {
+            return;
+        }
+        Set<World> worlds = new HashSet<>(islandWorlds);
+        worlds.add(world);
+        islandWorlds = Collections.unmodifiableSet(worlds);
+    }
+
+    /**
+     * @param world - world
+     * @return true if the world is an island world
+     */
+    public boolean isIslandWorld(World world) {
+        return world != null && islandWorlds.contains(world);
+    }
+
+    /**
+     * @return the island worlds
+     */
+    public Set<World> getWorlds() {
+        return islandWorlds;
+    }
+
+    public synchronized void addPlayer(UUID playerUUID, Island teamIsland) {
+        putPlayer(playerUUID, teamIsland);
+    }
+
+    /**
+     * Associates a player with an island in both player indexes
+     * @param playerUUID - the player's UUID
+     * @param island - island
+     */
+    private void putPlayer(UUID playerUUID, Island island) {
+        Island previous = islandsByUUID.put(playerUUID, island);
+        if (previous != null && previous != island) {
+            removeFromReverseIndex(playerUUID, previous);
+        }
+        uuidsByIsland.computeIfAbsent(island, k -> ConcurrentHashMap.newKeySet()).add(playerUUID);
+    }
+
+    /**
+     * Removes a player from both player indexes
+     * @param playerUUID - the player's UUID
+     */
+    private void removePlayerEntry(UUID playerUUID) {
+        Island previous = islandsByUUID.remove(playerUUID);
+        if (previous != null) {
+            removeFromReverseIndex(playerUUID, previous);
+        }
+    }
+
+    private void removeFromReverseIndex(UUID playerUUID, Island island) {
+        Set<UUID> uuids = uuidsByIsland.get(island);
+        if (uuids != null) {
+            uuids.remove(playerUUID);
+            if (uuids.isEmpty()) {
+                uuidsByIsland.remove(island);
+            }
+        }
+    }
+
+    /**
+     * Adds an island to the grid
      * @param newIsland
      */
     private void addToGrid(Island newIsland) {
-        if (islandGrid.containsKey(newIsland.getMinX())) {
-            TreeMap<Integer, Island> zEntry = islandGrid.get(newIsland.getMinX());
-            if (zEntry.containsKey(newIsland.getMinZ())) {
-                // Island already exists
-                Island conflict = islandGrid.get(newIsland.getMinX()).get(newIsland.getMinZ());
-                plugin.getLogger().warning("*** Duplicate or overlapping islands! ***");
-                plugin.getLogger().warning(
-                        "Island at (" + newIsland.getCenter().getBlockX() + ", " + newIsland.getCenter().getBlockZ() + ") conflicts with ("
-                                + conflict.getCenter().getBlockX() + ", " + conflict.getCenter().getBlockZ() + ")");
-                if (conflict.getOwner() != null) {
-                    plugin.getLogger().warning("Accepted island is owned by " + plugin.getPlayers().getName(conflict.getOwner()));
-                    plugin.getLogger().warning(conflict.getOwner().toString() + ".yml");
-                } else {
-                    plugin.getLogger().warning("Accepted island is unowned.");
-                }
-                if (newIsland.getOwner() != null) {
-                    plugin.getLogger().warning("Denied island is owned by " + plugin.getPlayers().getName(newIsland.getOwner()));
-                    plugin.getLogger().warning(newIsland.getOwner().toString() + ".yml");
-                } else {
-                    plugin.getLogger().warning("Denied island is unowned and was just found in the islands folder. Skipping it...");
-                }
-                plugin.getLogger().warning("Recommend that the denied player file is deleted otherwise weird things can happen.");
-                return;
+        Island conflict = islandGrid.add(newIsland);
+        if (conflict != null) {
+            // Island already exists
+            plugin.getLogger().warning("*** Duplicate or overlapping islands! ***");
+            plugin.getLogger().warning(
+                    "Island at (" + newIsland.getCenter().getBlockX() + ", " + newIsland.getCenter().getBlockZ() + ") conflicts with ("
+                            + conflict.getCenter().getBlockX() + ", " + conflict.getCenter().getBlockZ() + ")");
+            if (conflict.getOwner() != null) {
+                plugin.getLogger().warning("Accepted island is owned by " + plugin.getPlayers().getName(conflict.getOwner()));
+                plugin.getLogger().warning(conflict.getOwner().toString() + ".yml");
             } else {
-                // Add island
-                zEntry.put(newIsland.getMinZ(), newIsland);
-                islandGrid.put(newIsland.getMinX(), zEntry);
+                plugin.getLogger().warning("Accepted island is unowned.");
             }
-        } else {
-            // Add island
-            TreeMap<Integer, Island> zEntry = new TreeMap<>();
-            zEntry.put(newIsland.getMinZ(), newIsland);
-            islandGrid.put(newIsland.getMinX(), zEntry);
+            if (newIsland.getOwner() != null) {
+                plugin.getLogger().warning("Denied island is owned by " + plugin.getPlayers().getName(newIsland.getOwner()));
+                plugin.getLogger().warning(newIsland.getOwner().toString() + ".yml");
+            } else {
+                plugin.getLogger().warning("Denied island is unowned and was just found in the islands folder. Skipping it...");
+            }
+            plugin.getLogger().warning("Recommend that the denied player file is deleted otherwise weird things can happen.");
         }
     }
 
-    public void clear() {
-        islandsByLocation.clear();
+    public synchronized void clear() {
+        islandsByCenter.clear();
         islandsByUUID.clear();
+        uuidsByIsland.clear();
+        islandGrid = newGrid();
+        islandWorlds = Collections.emptySet();
     }
 
-    public Island createIsland(Island island) {
-        islandsByLocation.put(island.getCenter(), island);
+    public synchronized Island createIsland(Island island) {
+        islandsByCenter.put(registerCenterKey(island.getCenter()), island);
         if (island.getOwner() != null) {
-            islandsByUUID.put(island.getOwner(), island);
+            putPlayer(island.getOwner(), island);
         }
         addToGrid(island);
         return island;
@@ -121,51 +220,59 @@ public class IslandCache {
      * @param owner - the island owner UUID
      */
     public Island createIsland(Location location, UUID owner){
-        Island island = new Island(location, owner, plugin.getSettings().getIslandProtectionRange());
-        islandsByLocation.put(location, island);
-        if (owner != null) {
-            islandsByUUID.put(owner, island);
-        }
-        addToGrid(island);
-        return island;
+        return createIsland(new Island(location, owner, plugin.getSettings().getIslandProtectionRange()));
     }
 
     /**
      * Deletes an island from the database. Does not remove blocks
      * @param island
      */
-    public void deleteIslandFromCache(Island island) {
-        if (!islandsByLocation.remove(island.getCenter(), island)) {
+    public synchronized void deleteIslandFromCache(Island island) {
+        if (island == null) {
+            return;
+        }
+        long key = registerCenterKey(island.getCenter());
+        if (islandsByCenter.get(key) == island) {
+            islandsByCenter.remove(key);
+        } else {
             plugin.getLogger().severe("Could not remove island from cache!");
         }
-        Iterator<Entry<UUID, Island>> it = islandsByUUID.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<UUID, Island> en = it.next();
-            if (en.getValue().equals(island)) {
-                it.remove();
+        Set<UUID> uuids = uuidsByIsland.remove(island);
+        if (uuids != null) {
+            for (UUID uuid : uuids) {
+                islandsByUUID.remove(uuid, island);
             }
         }
         // Remove from grid
-        if (island != null) {
-            int x = island.getMinX();
-            int z = island.getMinZ();
-            if (islandGrid.containsKey(x)) {
-                TreeMap<Integer, Island> zEntry = islandGrid.get(x);
-                if (zEntry.containsKey(z)) {
-                    // Island exists - delete it
-                    zEntry.remove(z);
-                    islandGrid.put(x, zEntry);
-                }
-            }
-        }
+        islandGrid.remove(island);
     }
 
+    /**
+     * Gets the island with this center
+     * @param location - the island center
+     * @return island or null if there is none
+     */
     public Island get(Location location) {
-        return islandsByLocation.get(location);
+        Integer worldId = location.getWorld() == null ? Integer.valueOf(0) : worldIds.get(location.getWorld().getUID());
+        if (worldId == null) {
+            return null;
+        }
+        return islandsByCenter.get(IslandKeys.pack(worldId, location.getBlockX(), location.getBlockZ()));
+    }
+
+    /**
+     * Gets the key for an island center. The world is given an id if it does not have one yet.
+     * @param center - island center
+     * @return center key
+     */
+    private long registerCenterKey(Location center) {
+        World world = center.getWorld();
+        int worldId = world == null ? 0 : worldIds.computeIfAbsent(world.getUID(), k -> worldIds.size() + 1);
+        return IslandKeys.pack(worldId, center.getBlockX(), center.getBlockZ());
     }
 
     public Island get(UUID uuid) {
-        return islandsByUUID.get(uuid);
+        return uuid == null ? null : islandsByUUID.get(uuid);
     }
 
     /**
@@ -174,30 +281,22 @@ public class IslandCache {
      * @return Island
      */
     public Island getIsland(UUID uuid){
-        return islandsByUUID.get(uuid);
+        return get(uuid);
     }
 
     /**
-     * Returns the island at the x,z location or null if there is none.
+     * Returns the island at the x,z location in world or null if there is none.
+     * Null is returned if world is not an island world.
      * This includes the full island space, not just the protected area.
      *
+     * @param world - world
      * @param x - x coordinate
      * @param z - z coordinate
      * @return Island or null
      */
-    public Island getIslandAt(int x, int z) {
-        Entry<Integer, TreeMap<Integer, Island>> en = islandGrid.floorEntry(x);
-        if (en != null) {
-            Entry<Integer, Island> ent = en.getValue().floorEntry(z);
-            if (ent != null) {
-                // Check if in the island range
-                Island island = ent.getValue();
-                if (island.inIslandSpace(x, z)) {
-                    return island;
-                }
-            }
-        }
-        return null;
+    public Island getIslandAt(World world, int x, int z) {
+        IslandGrid grid = gridOf(world);
+        return grid == null ? null : grid.getIslandAt(x, z);
     }
 
     /**
@@ -211,11 +310,99 @@ public class IslandCache {
         if (location == null) {
             return null;
         }
-        // World check
-        if (!Util.inWorld(location)) {
-            return null;
+        return getIslandAt(location.getWorld(), location.getBlockX(), location.getBlockZ());
+    }
+
+    /**
+     * Returns the islands in world whose island space intersects the box.
+     * The box includes its bounds. The cost depends on the size of the box, not the number of islands.
+     *
+     * @param world - world
+     * @param minX - min x of the box
+     * @param minZ - min z of the box
+     * @param maxX - max x of the box
+     * @param maxZ - max z of the box
+     * @return list of islands, empty if there are none
+     */
+    public List<Island> getIslandsInBox(World world, int minX, int minZ, int maxX, int maxZ) {
+        List<Island> result = new ArrayList<>();
+        IslandGrid grid = gridOf(world);
+        if (grid != null) {
+            grid.forEachInBox(minX, minZ, maxX, maxZ, result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the islands whose center is within radius blocks of x,z, horizontally
+     * @param world - world
+     * @param x - x coordinate
+     * @param z - z coordinate
+     * @param radius - radius in blocks
+     * @return list of islands, empty if there are none
+     */
+    public List<Island> getIslandsInRadius(World world, int x, int z, int radius) {
+        List<Island> result = new ArrayList<>();
+        IslandGrid grid = gridOf(world);
+        if (grid == null || radius < 0) {
+            return result;
+        }
+        long radiusSquared = (long) radius * radius;
+        grid.forEachInBox(clamp((long) x - radius), clamp((long) z - radius), clamp((long) x + radius), clamp((long) z + radius), island -> {
+            if (distanceSquared(island, x, z) <= radiusSquared) {
+                result.add(island);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the islands with the closest centers to x,z, closest first
+     * @param world - world
+     * @param x - x coordinate
+     * @param z - z coordinate
+     * @param count - maximum number of islands to return
+     * @return list of up to count islands, empty if there are none
+     */
+    public List<Island> getNearestIslands(World world, int x, int z, int count) {
+        IslandGrid grid = gridOf(world);
+        if (grid == null || count <= 0 || grid.size() == 0) {
+            return new ArrayList<>();
+        }
+        // Search a growing box until it holds enough islands that are within its inner circle.
+        // Any island closer than those has its center in the box, so it has been found too.
+        List<Island> found = new ArrayList<>();
+        long radius = Math.max(16, grid.getCellSize());
+        while (true) {
+            found.clear();
+            grid.forEachInBox(clamp(x - radius), clamp(z - radius), clamp(x + radius), clamp(z + radius), found::add);
+            long radiusSquared = radius * radius;
+            if (found.size() >= grid.size() || radius > Integer.MAX_VALUE
+                    || found.stream().filter(i -> distanceSquared(i, x, z) <= radiusSquared).count() >= count) {
+                break;
+            }
+            radius *= 2;
         }
-        return getIslandAt(location.getBlockX(), location.getBlockZ());
+        found.sort(Comparator.comparingLong(i -> distanceSquared(i, x, z)));
+        return found.size() > count ? new ArrayList<>(found.subList(0, count)) : found;
+    }
+
+    /**
+     * @param world - world
+     * @return the spatial grid, or null if world is not an island world
+     */
+    private IslandGrid gridOf(World world) {
+        return isIslandWorld(world) ? islandGrid : null;
+    }
+
+    private static long distanceSquared(Island island, int x, int z) {
+        long dx = (long) island.getX() - x;
+        long dz = (long) island.getZ() - z;
+        return dx * dx + dz * dz;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
     }
 
     /**
@@ -239,21 +426,22 @@ public class IslandCache {
      */
     public String getIslandName(UUID owner) {
         String result = plugin.getPlayers().getName(owner);
-        if (islandsByUUID.containsKey(owner)) {
-            Island island = islandsByUUID.get(owner);
-            if (island.getName() != null && !island.getName().isEmpty()) {
-                result = island.getName();
-            }
+        Island island = get(owner);
+        if (island != null && island.getName() != null && !island.getName().isEmpty()) {
+            result = island.getName();
         }
         return ChatColor.translateAlternateColorCodes('&', result) + ChatColor.RESET;
     }
 
+    /**
+     * @return a snapshot of all the islands in the cache
+     */
     public Collection<Island> getIslands() {
-        return Collections.unmodifiableCollection(islandsByLocation.values());
+        return Collections.unmodifiableCollection(islandsByCenter.values());
     }
 
     public Set<UUID> getMembers(UUID playerUUID) {
-        Island island = islandsByUUID.get(playerUUID);
+        Island island = get(playerUUID);
         if (island != null) {
             return island.getMemberSet();
         }
@@ -261,10 +449,8 @@ public class IslandCache {
     }
 
     public UUID getTeamLeader(UUID playerUUID) {
-        if (islandsByUUID.containsKey(playerUUID)) {
-            return islandsByUUID.get(playerUUID).getOwner();
-        }
-        return null;
+        Island island = get(playerUUID);
+        return island == null ? null : island.getOwner();
     }
 
     /**
@@ -272,11 +458,14 @@ public class IslandCache {
      * @return true if player has island and owns it
      */
     public boolean hasIsland(UUID playerUUID) {
-        return (islandsByUUID.containsKey(playerUUID) && islandsByUUID.get(playerUUID).getOwner() != null 
-                && (islandsByUUID.get(playerUUID).getOwner().equals(playerUUID))) ? true : false;
+        Island island = get(playerUUID);
+        return island != null && island.getOwner() != null && island.getOwner().equals(playerUUID);
     }
 
-    public void removePlayer(UUID playerUUID) {
+    public synchronized void removePlayer(UUID playerUUID) {
+        if (playerUUID == null) {
+            return;
+        }
         Island island = islandsByUUID.get(playerUUID);
         if (island != null) {
             if (island.getOwner() != null && island.getOwner().equals(playerUUID)) {
@@ -286,20 +475,40 @@ public class IslandCache {
             }
             island.removeMember(playerUUID);
         }
-        islandsByUUID.remove(playerUUID);
-
+        removePlayerEntry(playerUUID);
     }
 
     public void setIslandName(UUID owner, String name) {
-        if (islandsByUUID.containsKey(owner)) {
-            Island island = islandsByUUID.get(owner);
+        Island island = get(owner);
+        if (island != null) {
             island.setName(name);
         }
-
     }
 
     public int size() {
-        return islandsByLocation.size();
+        return islandsByCenter.size();
+    }
+
+    /**
+     * Compares the player to island index with its reverse index
+     * @return list of inconsistencies found, empty if the indexes agree
+     */
+    public synchronized List<String> checkPlayerIndexes() {
+        List<String> result = new ArrayList<>();
+        for (Entry<UUID, Island> en : islandsByUUID.entrySet()) {
+            Set<UUID> uuids = uuidsByIsland.get(en.getValue());
+            if (uuids == null || !uuids.contains(en.getKey())) {
+                result.add("Player " + en.getKey() + " is on island " + en.getValue().getUniqueId() + " but is not in the island's player index");
+            }
+        }
+        for (Entry<Island, Set<UUID>> en : uuidsByIsland.entrySet()) {
+            for (UUID uuid : en.getValue()) {
+                if (islandsByUUID.get(uuid) != en.getKey()) {
+                    result.add("Island " + en.getKey().getUniqueId() + " lists player " + uuid + " but the player is not on that island");
+                }
+            }
+        }
+        return result;
     }
     
 }
@@ -0,0 +1,167 @@
+package us.tastybento.bskyblock.managers.island;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.util.LongObjectMap;
+
+/**
+ * Table of loaded chunks that lie entirely inside one island's space, per world.
+ * Chunks are added when they load and dropped when they unload. Lookups in these chunks
+ * are answered with one probe instead of going to the island grid.
+ * This class must only be used from the main server thread.
+ *
+ * @author tastybento
+ *
+ */
+public class IslandChunkCache {
+
+    private final IslandCache islandCache;
+    private final Map<World, LongObjectMap<Island>> chunks = new HashMap<>();
+    private long hits;
+    private long misses;
+    // Changes every time islands are added or removed
+    private int version;
+
+    /**
+     * @param islandCache - the island cache used to resolve chunks
+     */
+    public IslandChunkCache(IslandCache islandCache) {
+        this.islandCache = islandCache;
+    }
+
+    /**
+     * Adds the chunk to the table if it lies entirely inside an island's space
+     * @param chunk - chunk that was loaded
+     */
+    public void addChunk(Chunk chunk) {
+        World world = chunk.getWorld();
+        if (!islandCache.isIslandWorld(world)) {
+            return;
+        }
+        int minX = chunk.getX() << 4;
+        int minZ = chunk.getZ() << 4;
+        Island island = islandCache.getIslandAt(world, minX, minZ);
+        if (island != null && island.inIslandSpace(minX + 15, minZ + 15)) {
+            chunks.computeIfAbsent(world, k -> new LongObjectMap<>()).put(LongObjectMap.pack(chunk.getX(), chunk.getZ()), island);
+        }
+    }
+
+    /**
+     * Drops the chunk from the table
+     * @param chunk - chunk that was unloaded
+     */
+    public void removeChunk(Chunk chunk) {
+        LongObjectMap<Island> table = chunks.get(chunk.getWorld());
+        if (table != null) {
+            table.remove(LongObjectMap.pack(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    /**
+     * Adds the loaded chunks of a new island to the table
+     * @param island - new island
+     */
+    public void addIsland(Island island) {
+        version++;
+        forEachChunk(island, (world, chunkX, chunkZ) -> {
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                addChunk(world.getChunkAt(chunkX, chunkZ));
+            }
+        });
+    }
+
+    /**
+     * Drops every chunk that belongs to this island
+     * @param island - island being deleted
+     */
+    public void removeIsland(Island island) {
+        version++;
+        forEachChunk(island, (world, chunkX, chunkZ) -> {
+            LongObjectMap<Island> table = chunks.get(world);
+            long key = LongObjectMap.pack(chunkX, chunkZ);
+            if (table != null && table.get(key) == island) {
+                table.remove(key);
+            }
+        });
+    }
+
+    private void forEachChunk(Island island, ChunkConsumer action) {
+        int minChunkX = island.getMinX() >> 4;
+        int minChunkZ = island.getMinZ() >> 4;
+        int maxChunkX = (island.getMinX() + island.getRange() * 2 - 1) >> 4;
+        int maxChunkZ = (island.getMinZ() + island.getRange() * 2 - 1) >> 4;
+        for (World world : islandCache.getWorlds()) {
+            for (int x = minChunkX; x <= maxChunkX; x++) {
+                for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                    action.accept(world, x, z);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(World world, int chunkX, int chunkZ);
+    }
+
+    /**
+     * Gets the island at this block if its chunk is in the table
+     * @param world - world
+     * @param x - block x coordinate
+     * @param z - block z coordinate
+     * @return island, or null if the chunk is not in the table. Null does not mean there is no island.
+     */
+    public Island get(World world, int x, int z) {
+        LongObjectMap<Island> table = chunks.get(world);
+        Island island = table == null ? null : table.get(LongObjectMap.pack(x >> 4, z >> 4));
+        if (island == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return island;
+    }
+
+    /**
+     * Removes all chunks and resets the counters
+     */
+    public void clear() {
+        version++;
+        chunks.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return a number that changes every time islands are added to or removed from the table
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of chunks in the table
+     */
+    public int size() {
+        return chunks.values().stream().mapToInt(LongObjectMap::size).sum();
+    }
+
+    /**
+     * @return number of lookups answered by the table
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that had to go to the island grid
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
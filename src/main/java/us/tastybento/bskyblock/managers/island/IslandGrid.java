@@ -0,0 +1,227 @@
+package us.tastybento.bskyblock.managers.island;
+
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.util.ConcurrentLongObjectMap;
+import us.tastybento.bskyblock.util.LongObjectMap;
+
+/**
+ * Spatial index of islands.
+ * Islands sit on a lattice of cells that are twice the island distance wide, so the cell
+ * for a coordinate can be calculated and looked up with one probe. Legacy islands that
+ * are not on the lattice are kept in a sorted grid and are only checked if the lattice misses.
+ * It can be read from any thread without locking. Writes must be serialized, which {@link IslandCache} does.
+ * Adding or removing an island only touches that island's cell.
+ *
+ * @author tastybento
+ *
+ */
+class IslandGrid {
+
+    private final int cellSize;
+    private final int originX;
+    private final int originZ;
+    private final ConcurrentLongObjectMap<Island> cells;
+    // Islands that are off the lattice, x,z of their minimum corner
+    private final ConcurrentSkipListMap<Integer, ConcurrentSkipListMap<Integer, Island>> offLattice = new ConcurrentSkipListMap<>();
+    private volatile int offLatticeCount;
+    // Widest island space off the lattice. Only grows, so range queries stay correct after removals.
+    private volatile int offLatticeWidth;
+
+    /**
+     * @param distance - island distance (half the distance between island centers)
+     * @param centerX - x coordinate of any island center on the lattice
+     * @param centerZ - z coordinate of any island center on the lattice
+     */
+    IslandGrid(int distance, int centerX, int centerZ) {
+        this.cellSize = distance * 2;
+        this.originX = centerX - distance;
+        this.originZ = centerZ - distance;
+        this.cells = new ConcurrentLongObjectMap<>();
+    }
+
+    /**
+     * Adds island to the grid
+     * @param island - island
+     * @return the island already occupying this spot, or null if the island was added
+     */
+    Island add(Island island) {
+        Island conflict = getIslandByMin(island.getMinX(), island.getMinZ());
+        if (conflict != null) {
+            return conflict;
+        }
+        if (onLattice(island)) {
+            long key = cellKey(island.getMinX(), island.getMinZ());
+            conflict = cells.get(key);
+            if (conflict != null) {
+                return conflict;
+            }
+            cells.put(key, island);
+        } else {
+            // Widened first so a reader that finds the island also looks back far enough
+            offLatticeWidth = Math.max(offLatticeWidth, island.getRange() * 2);
+            offLattice.computeIfAbsent(island.getMinX(), k -> new ConcurrentSkipListMap<>()).put(island.getMinZ(), island);
+            offLatticeCount++;
+        }
+        return null;
+    }
+
+    /**
+     * Removes island from the grid
+     * @param island - island
+     * @return true if island was in the grid
+     */
+    boolean remove(Island island) {
+        if (cellSize > 0) {
+            long key = cellKey(island.getMinX(), island.getMinZ());
+            if (cells.get(key) == island) {
+                cells.remove(key);
+                return true;
+            }
+        }
+        NavigableMap<Integer, Island> zEntry = offLattice.get(island.getMinX());
+        if (zEntry != null && zEntry.remove(island.getMinZ(), island)) {
+            offLatticeCount--;
+            if (zEntry.isEmpty()) {
+                offLattice.remove(island.getMinX(), zEntry);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the island at the x,z location or null if there is none.
+     * This includes the full island space, not just the protected area.
+     *
+     * @param x - x coordinate
+     * @param z - z coordinate
+     * @return Island or null
+     */
+    Island getIslandAt(int x, int z) {
+        if (cellSize > 0) {
+            Island island = cells.get(cellKey(x, z));
+            if (island != null && island.inIslandSpace(x, z)) {
+                return island;
+            }
+        }
+        if (offLattice.isEmpty()) {
+            return null;
+        }
+        Entry<Integer, ConcurrentSkipListMap<Integer, Island>> en = offLattice.floorEntry(x);
+        if (en != null) {
+            Entry<Integer, Island> ent = en.getValue().floorEntry(z);
+            if (ent != null && ent.getValue().inIslandSpace(x, z)) {
+                return ent.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs action for every island whose island space intersects the box.
+     * The box includes its bounds. Only the lattice cells covered by the box are probed,
+     * unless there are fewer islands than cells, in which case every island is checked.
+     *
+     * @param minX - min x of the box
+     * @param minZ - min z of the box
+     * @param maxX - max x of the box
+     * @param maxZ - max z of the box
+     * @param action - action to run
+     */
+    void forEachInBox(int minX, int minZ, int maxX, int maxZ, Consumer<Island> action) {
+        if (minX > maxX || minZ > maxZ) {
+            return;
+        }
+        if (cellSize > 0 && !cells.isEmpty()) {
+            long minCellX = Math.floorDiv((long) minX - originX, cellSize);
+            long minCellZ = Math.floorDiv((long) minZ - originZ, cellSize);
+            long maxCellX = Math.floorDiv((long) maxX - originX, cellSize);
+            long maxCellZ = Math.floorDiv((long) maxZ - originZ, cellSize);
+            if ((maxCellX - minCellX + 1) * (maxCellZ - minCellZ + 1) > cells.size()) {
+                cells.forEachValue(island -> {
+                    if (intersects(island, minX, minZ, maxX, maxZ)) {
+                        action.accept(island);
+                    }
+                });
+            } else {
+                for (long x = minCellX; x <= maxCellX; x++) {
+                    for (long z = minCellZ; z <= maxCellZ; z++) {
+                        Island island = cells.get(LongObjectMap.pack((int) x, (int) z));
+                        if (island != null && intersects(island, minX, minZ, maxX, maxZ)) {
+                            action.accept(island);
+                        }
+                    }
+                }
+            }
+        }
+        if (offLatticeCount == 0) {
+            return;
+        }
+        // Off lattice islands are keyed by their minimum corner so look back by the widest island
+        int fromX = (int) Math.max(Integer.MIN_VALUE, (long) minX - offLatticeWidth + 1);
+        int fromZ = (int) Math.max(Integer.MIN_VALUE, (long) minZ - offLatticeWidth + 1);
+        for (NavigableMap<Integer, Island> zEntry : offLattice.subMap(fromX, true, maxX, true).values()) {
+            for (Island island : zEntry.subMap(fromZ, true, maxZ, true).values()) {
+                if (intersects(island, minX, minZ, maxX, maxZ)) {
+                    action.accept(island);
+                }
+            }
+        }
+    }
+
+    private static boolean intersects(Island island, int minX, int minZ, int maxX, int maxZ) {
+        long width = island.getRange() * 2L;
+        return island.getMinX() <= maxX && island.getMinX() + width > minX
+                && island.getMinZ() <= maxZ && island.getMinZ() + width > minZ;
+    }
+
+    /**
+     * @return width of a lattice cell, or 0 if the grid has no lattice
+     */
+    int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return number of islands in the grid
+     */
+    int size() {
+        return cells.size() + offLatticeCount;
+    }
+
+    /**
+     * Finds an island that has the same minimum corner
+     * @param minX - min x
+     * @param minZ - min z
+     * @return island or null
+     */
+    private Island getIslandByMin(int minX, int minZ) {
+        if (cellSize > 0) {
+            Island island = cells.get(cellKey(minX, minZ));
+            if (island != null && island.getMinX() == minX && island.getMinZ() == minZ) {
+                return island;
+            }
+        }
+        NavigableMap<Integer, Island> zEntry = offLattice.get(minX);
+        return zEntry == null ? null : zEntry.get(minZ);
+    }
+
+    /**
+     * @param island - island
+     * @return true if the island space fits exactly in one lattice cell
+     */
+    private boolean onLattice(Island island) {
+        return cellSize > 0 && island.getRange() > 0 && island.getRange() * 2 <= cellSize
+                && Math.floorMod(island.getMinX() - originX, cellSize) == 0
+                && Math.floorMod(island.getMinZ() - originZ, cellSize) == 0;
+    }
+
+    private long cellKey(int x, int z) {
+        return LongObjectMap.pack(Math.floorDiv(x - originX, cellSize), Math.floorDiv(z - originZ, cellSize));
+    }
+}
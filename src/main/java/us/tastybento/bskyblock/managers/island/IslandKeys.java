@@ -0,0 +1,28 @@
+package us.tastybento.bskyblock.managers.island;
+
+/**
+ * Packs an island center - world id, x and z - into a single long so that it can be used as
+ * an immutable map key without holding on to Location or World objects.
+ * Each coordinate uses 26 bits, which covers the whole Minecraft world border.
+ * The world id uses the remaining 12 bits.
+ *
+ * @author tastybento
+ *
+ */
+final class IslandKeys {
+
+    private static final int COORD_BITS = 26;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+    private IslandKeys() {}
+
+    /**
+     * @param worldId - world id, 0 to 4095
+     * @param x - block x coordinate of the center
+     * @param z - block z coordinate of the center
+     * @return packed key
+     */
+    static long pack(int worldId, int x, int z) {
+        return ((long) worldId << (COORD_BITS * 2)) | ((x & COORD_MASK) << COORD_BITS) | (z & COORD_MASK);
+    }
+}
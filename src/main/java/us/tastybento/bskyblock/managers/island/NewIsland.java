@@ -178,33 +178,27 @@ public class NewIsland {
      * island_distance setting from the config file Builds up in a grid fashion
      *
      * @param lastIsland
-     * @return Location of next free island
+     * @return Location of next free island. This is a new location, lastIsland is not changed.
      */
     private Location nextGridLocation(final Location lastIsland) {
         int x = lastIsland.getBlockX();
         int z = lastIsland.getBlockZ();
-        Location nextPos = lastIsland;
+        int d = plugin.getSettings().getIslandDistance() * 2;
         if (x < z) {
             if (-1 * x < z) {
-                nextPos.setX(nextPos.getX() + plugin.getSettings().getIslandDistance()*2);
-                return nextPos;
+                return lastIsland.clone().add(d, 0, 0);
             }
-            nextPos.setZ(nextPos.getZ() + plugin.getSettings().getIslandDistance()*2);
-            return nextPos;
+            return lastIsland.clone().add(0, 0, d);
         }
         if (x > z) {
             if (-1 * x >= z) {
-                nextPos.setX(nextPos.getX() - plugin.getSettings().getIslandDistance()*2);
-                return nextPos;
+                return lastIsland.clone().add(-d, 0, 0);
             }
-            nextPos.setZ(nextPos.getZ() - plugin.getSettings().getIslandDistance()*2);
-            return nextPos;
+            return lastIsland.clone().add(0, 0, -d);
         }
         if (x <= 0) {
-            nextPos.setZ(nextPos.getZ() + plugin.getSettings().getIslandDistance()*2);
-            return nextPos;
+            return lastIsland.clone().add(0, 0, d);
         }
-        nextPos.setZ(nextPos.getZ() - plugin.getSettings().getIslandDistance()*2);
-        return nextPos;
+        return lastIsland.clone().add(0, 0, -d);
     }
 }
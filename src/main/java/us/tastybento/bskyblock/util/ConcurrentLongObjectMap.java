@@ -0,0 +1,218 @@
+package us.tastybento.bskyblock.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * An open-addressing hash map from primitive long keys to objects that can be read from any thread without locking.
+ * Keys are never boxed, so lookups do not allocate. Null values are not allowed.
+ * Writes must not be made from more than one thread at a time, so callers that write from several threads
+ * must synchronize their writes. A write only touches the slot of its key. Removed keys keep their slot until
+ * the table is next rebuilt, so readers never miss a key that another key's removal would have moved.
+ *
+ * @author tastybento
+ *
+ * @param <V> - value type
+ */
+public class ConcurrentLongObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Marks a slot whose key has been removed
+    private static final Object REMOVED = new Object();
+
+    private static class Table {
+        // A key is set before its value, so a reader that sees a value also sees its key
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+    // Slots that hold a key, including removed keys. Only used by the writer.
+    private int used;
+
+    public ConcurrentLongObjectMap() {
+        table = new Table(DEFAULT_CAPACITY);
+    }
+
+    private static int hash(long key) {
+        // Murmur3 finalizer - spreads neighbouring grid coordinates across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * @param key - key
+     * @return the value for this key or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        Object value;
+        while ((value = t.values.get(i)) != null) {
+            if (t.keys.get(i) == key) {
+                return value == REMOVED ? null : (V) value;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key - key
+     * @return true if this key has a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Puts a value into the map
+     * @param key - key
+     * @param value - value, must not be null
+     * @return the previous value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not allowed");
+        }
+        Table t = table;
+        int i = hash(key) & t.mask;
+        Object previous;
+        while ((previous = t.values.get(i)) != null) {
+            if (t.keys.get(i) == key) {
+                t.values.set(i, value);
+                if (previous == REMOVED) {
+                    size++;
+                    return null;
+                }
+                return (V) previous;
+            }
+            i = (i + 1) & t.mask;
+        }
+        t.keys.set(i, key);
+        t.values.set(i, value);
+        size++;
+        if (++used > (t.mask + 1) * 3 / 4) {
+            rebuild();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value for this key
+     * @param key - key
+     * @return the removed value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        Object previous;
+        while ((previous = t.values.get(i)) != null) {
+            if (t.keys.get(i) == key) {
+                if (previous == REMOVED) {
+                    return null;
+                }
+                t.values.set(i, REMOVED);
+                size--;
+                return (V) previous;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Copies the live entries into a new table and publishes it.
+     * Readers that are using the old table finish with it unchanged.
+     */
+    private void rebuild() {
+        Table old = table;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 8 < size) {
+            capacity <<= 1;
+        }
+        Table t = new Table(capacity);
+        int count = 0;
+        for (int j = 0; j <= old.mask; j++) {
+            Object value = old.values.get(j);
+            if (value != null && value != REMOVED) {
+                long key = old.keys.get(j);
+                int i = hash(key) & t.mask;
+                while (t.values.get(i) != null) {
+                    i = (i + 1) & t.mask;
+                }
+                t.keys.set(i, key);
+                t.values.set(i, value);
+                count++;
+            }
+        }
+        used = count;
+        table = t;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        table = new Table(DEFAULT_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    /**
+     * Runs action for every value in the map.
+     * Values put or removed while this runs may or may not be seen.
+     * @param action - action to run
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        Table t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            Object value = t.values.get(i);
+            if (value != null && value != REMOVED) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the values in this map
+     */
+    public Collection<V> values() {
+        Collection<V> result = new ArrayList<>(size);
+        forEachValue(result::add);
+        return result;
+    }
+}
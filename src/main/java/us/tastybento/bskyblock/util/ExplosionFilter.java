@@ -0,0 +1,105 @@
+package us.tastybento.bskyblock.util;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.managers.IslandsManager;
+
+/**
+ * Removes protected blocks from explosion block lists in one pass.
+ * Blocks are removed in place and no objects are made per block.
+ *
+ * @author tastybento
+ *
+ */
+public class ExplosionFilter {
+
+    private ExplosionFilter() {}
+
+    /**
+     * Removes the blocks that match remove. The order of the other blocks is kept.
+     * @param blocks - block list, changed in place
+     * @param remove - returns true if the block should be removed
+     * @return number of blocks removed
+     */
+    public static int removeIf(List<Block> blocks, Predicate<Block> remove) {
+        int size = blocks.size();
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            Block block = blocks.get(read);
+            if (!remove.test(block)) {
+                if (write != read) {
+                    blocks.set(write, block);
+                }
+                write++;
+            }
+        }
+        if (write < size) {
+            blocks.subList(write, size).clear();
+        }
+        return size - write;
+    }
+
+    /**
+     * Removes the blocks that are on islands where destroying them is not allowed.
+     * Blocks are grouped by island, so allowed is checked once per island, and blocks that are
+     * in the same island space as the block before them are decided without a lookup.
+     * @param blocks - block list of an explosion, changed in place. All the blocks must be in the same world.
+     * @param islands - islands manager
+     * @param allowed - returns true if blocks on this island may be destroyed. It is called with null for blocks that are not on an island.
+     * @return number of blocks removed
+     */
+    public static int removeProtected(List<Block> blocks, IslandsManager islands, Predicate<Island> allowed) {
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+        World world = blocks.get(0).getWorld();
+        IslandDecisions decisions = new IslandDecisions(allowed);
+        return removeIf(blocks, block -> !decisions.isAllowed(islands, world, block.getX(), block.getZ()));
+    }
+
+    /**
+     * Remembers the decision for each island seen in one explosion
+     */
+    private static class IslandDecisions {
+        private final Predicate<Island> allowed;
+        private Island last;
+        private boolean lastAllowed;
+        // Only made if the explosion covers more than one island
+        private Map<Island, Boolean> others;
+        private Boolean offIslandAllowed;
+
+        IslandDecisions(Predicate<Island> allowed) {
+            this.allowed = allowed;
+        }
+
+        boolean isAllowed(IslandsManager islands, World world, int x, int z) {
+            if (last != null && last.inIslandSpace(x, z)) {
+                return lastAllowed;
+            }
+            Island island = islands.getIslandAt(world, x, z);
+            if (island == null) {
+                if (offIslandAllowed == null) {
+                    offIslandAllowed = allowed.test(null);
+                }
+                return offIslandAllowed;
+            }
+            if (last != null) {
+                if (others == null) {
+                    others = new IdentityHashMap<>();
+                }
+                others.put(last, lastAllowed);
+            }
+            Boolean known = others == null ? null : others.get(island);
+            last = island;
+            lastAllowed = known != null ? known : allowed.test(island);
+            return lastAllowed;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package us.tastybento.bskyblock.util;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+/**
+ * A small read-only hash map from UUIDs to primitive ints.
+ * UUIDs are stored as their two longs, so lookups do not box or allocate.
+ * It cannot be changed after it is made, so it is safe to share between threads.
+ *
+ * @author tastybento
+ *
+ */
+public final class UUIDIntMap {
+
+    private final long[] most;
+    private final long[] least;
+    private final int[] values;
+    private final boolean[] used;
+    private final int mask;
+
+    /**
+     * @param map - map to copy. Null keys and values are ignored.
+     */
+    public UUIDIntMap(Map<UUID, Integer> map) {
+        int capacity = 4;
+        while (capacity < map.size() * 2) {
+            capacity <<= 1;
+        }
+        most = new long[capacity];
+        least = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        for (Entry<UUID, Integer> en : map.entrySet()) {
+            if (en.getKey() != null && en.getValue() != null) {
+                put(en.getKey(), en.getValue());
+            }
+        }
+    }
+
+    private void put(UUID key, int value) {
+        long m = key.getMostSignificantBits();
+        long l = key.getLeastSignificantBits();
+        int i = hash(m, l) & mask;
+        while (used[i] && (most[i] != m || least[i] != l)) {
+            i = (i + 1) & mask;
+        }
+        most[i] = m;
+        least[i] = l;
+        values[i] = value;
+        used[i] = true;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * @param key - key
+     * @param defaultValue - value to return if there is no value for this key
+     * @return the value for this key or defaultValue
+     */
+    public int get(UUID key, int defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        long m = key.getMostSignificantBits();
+        long l = key.getLeastSignificantBits();
+        int i = hash(m, l) & mask;
+        while (used[i]) {
+            if (most[i] == m && least[i] == l) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,117 @@
+package us.tastybento.bskyblock.api.user;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotifierTest {
+
+    private Notifier notifier;
+    private User user;
+
+    @Before
+    public void setUp() {
+        notifier = new Notifier();
+        user = mock(User.class);
+    }
+
+    @Test
+    public void testSameMessage() {
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        assertFalse(notifier.canNotify(user, "protection.protected", Locale.US));
+        // Other users are not affected
+        assertTrue(notifier.canNotify(mock(User.class), "protection.protected", Locale.US));
+    }
+
+    @Test
+    public void testDifferentMessage() {
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        assertTrue(notifier.canNotify(user, "protection.locked", Locale.US));
+        // The last message is the one that is held back
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        assertFalse(notifier.canNotify(user, "protection.protected", Locale.US));
+    }
+
+    @Test
+    public void testDifferentLocale() {
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.FRANCE));
+        assertFalse(notifier.canNotify(user, "protection.protected", Locale.FRANCE));
+    }
+
+    @Test
+    public void testDelayPassed() {
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        // Sent longer ago than the delay
+        long longAgo = System.nanoTime() - (Notifier.NOTIFICATION_DELAY + 1) * 1_000_000_000L;
+        user.lastNotification = new Notifier.Notification("protection.protected", Locale.US, longAgo);
+        assertTrue(notifier.canNotify(user, "protection.protected", Locale.US));
+        assertFalse(notifier.canNotify(user, "protection.protected", Locale.US));
+    }
+
+    @Test
+    public void testNotify() {
+        assertTrue(notifier.notify(user, "hello"));
+        assertFalse(notifier.notify(user, "hello"));
+        assertTrue(notifier.notify(user, "goodbye"));
+        verify(user, times(1)).sendRawMessage("hello");
+        verify(user, times(1)).sendRawMessage("goodbye");
+    }
+
+    /**
+     * Starts threads at the same time, each checking one message for the user
+     * @param target - user
+     * @param id - message id for each thread
+     * @return number of threads that were told to send
+     */
+    private int race(User target, IntFunction<String> id) throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sent = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            String message = id.apply(t);
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (notifier.canNotify(target, message, Locale.US)) {
+                    sent.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return sent.get();
+    }
+
+    @Test
+    public void testConcurrentSameMessage() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            assertEquals(1, race(mock(User.class), t -> "protection.protected"));
+        }
+    }
+
+    @Test
+    public void testConcurrentDifferentMessages() throws InterruptedException {
+        // A thread that loses the race to record its message still sends it
+        for (int round = 0; round < 200; round++) {
+            assertEquals(8, race(mock(User.class), t -> "message." + t));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package us.tastybento.bskyblock.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import us.tastybento.bskyblock.database.objects.DataObject;
+
+public class WriteBehindQueueTest {
+
+    private static class TestObject implements DataObject {
+        private String uniqueId;
+        private final int value;
+
+        TestObject(String uniqueId, int value) {
+            this.uniqueId = uniqueId;
+            this.value = value;
+        }
+
+        @Override
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public void setUniqueId(String uniqueId) {
+            this.uniqueId = uniqueId;
+        }
+    }
+
+    /**
+     * Records what is written. Saving an object with the id "block" waits until it is released.
+     */
+    private static class RecordingHandler extends AbstractDatabaseHandler<TestObject> {
+        private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        RecordingHandler() {
+            super(null, TestObject.class, null);
+        }
+
+        @Override
+        public void saveObject(TestObject instance) {
+            writes.add("save " + instance.getUniqueId() + ":" + instance.value);
+            if (instance.getUniqueId().equals("block")) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void deleteObject(TestObject instance) {
+            writes.add("delete " + instance.getUniqueId());
+        }
+
+        @Override
+        public List<TestObject> loadObjects() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public TestObject loadObject(String uniqueId) {
+            return null;
+        }
+
+        @Override
+        public boolean objectExists(String key) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    private RecordingHandler handler;
+    private WriteBehindQueue<TestObject> queue;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        handler = new RecordingHandler();
+        queue = new WriteBehindQueue<>(handler, Logger.getAnonymousLogger());
+        // Hold the writer so the requests in each test are all queued before any of them are written
+        queue.save(new TestObject("block", 0));
+        assertTrue(handler.blocked.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        handler.release.countDown();
+    }
+
+    /**
+     * Lets the writer go and waits until everything has been written
+     * @return the writes after the first one
+     */
+    private List<String> writeAll() {
+        handler.release.countDown();
+        queue.flush();
+        assertEquals("save block:0", handler.writes.get(0));
+        return new ArrayList<>(handler.writes.subList(1, handler.writes.size()));
+    }
+
+    @Test
+    public void testCoalescing() {
+        for (int i = 1; i <= 5; i++) {
+            queue.save(new TestObject("a", i));
+        }
+        queue.save(new TestObject("b", 1));
+        assertTrue(queue.isPending(new TestObject("a", 0)));
+        assertEquals(Arrays.asList("save a:5", "save b:1"), writeAll());
+        assertFalse(queue.isPending(new TestObject("a", 0)));
+    }
+
+    @Test
+    public void testOrder() {
+        queue.save(new TestObject("c", 1));
+        queue.save(new TestObject("a", 1));
+        queue.delete(new TestObject("d", 1));
+        queue.save(new TestObject("b", 1));
+        // Queuing again does not move a key
+        queue.save(new TestObject("c", 2));
+        assertEquals(Arrays.asList("save c:2", "save a:1", "delete d", "save b:1"), writeAll());
+    }
+
+    @Test
+    public void testDeleteAfterSave() {
+        queue.save(new TestObject("a", 1));
+        queue.delete(new TestObject("a", 2));
+        queue.save(new TestObject("b", 1));
+        queue.delete(new TestObject("b", 2));
+        // Saved again after the delete, so it is saved
+        queue.save(new TestObject("b", 3));
+        assertEquals(Arrays.asList("delete a", "save b:3"), writeAll());
+
+        // Deleted after the save was written
+        queue.delete(new TestObject("b", 4));
+        queue.flush();
+        assertEquals("delete b", handler.writes.get(handler.writes.size() - 1));
+    }
+
+    @Test
+    public void testQueuedWhileWriting() {
+        // The blocked object is being written, so queuing it again writes it again afterwards
+        queue.save(new TestObject("block", 1));
+        assertEquals(Arrays.asList("save block:1"), writeAll());
+    }
+}
@@ -0,0 +1,108 @@
+package us.tastybento.bskyblock.database.flatfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import us.tastybento.bskyblock.BSkyBlock;
+import us.tastybento.bskyblock.Settings;
+import us.tastybento.bskyblock.database.DatabaseConnecter;
+import us.tastybento.bskyblock.database.objects.DataObject;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ BSkyBlock.class })
+public class FlatFileDatabaseHandlerTest {
+
+    public static class TestObject implements DataObject {
+        private String uniqueId;
+
+        @Override
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public void setUniqueId(String uniqueId) {
+            this.uniqueId = uniqueId;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BSkyBlock plugin;
+    private Settings settings;
+    private DatabaseConnecter dbConnecter;
+    private File tableFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        plugin = mock(BSkyBlock.class);
+        settings = mock(Settings.class);
+        when(plugin.getSettings()).thenReturn(settings);
+        when(plugin.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        when(plugin.getDataFolder()).thenReturn(folder.getRoot());
+        tableFolder = new File(new File(folder.getRoot(), "database"), TestObject.class.getSimpleName());
+        tableFolder.mkdirs();
+        dbConnecter = mock(DatabaseConnecter.class);
+        // The bad file cannot be read
+        when(dbConnecter.loadYamlFile(anyString(), eq("bad.yml"))).thenThrow(new IllegalArgumentException("bad file"));
+    }
+
+    /**
+     * Adds a file that loads as an object with this id
+     */
+    private void addFile(String uniqueId) throws IOException {
+        new File(tableFolder, uniqueId + ".yml").createNewFile();
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("uniqueId", uniqueId);
+        when(dbConnecter.loadYamlFile(anyString(), eq(uniqueId + ".yml"))).thenReturn(config);
+    }
+
+    private Set<String> load(int threads) throws Exception {
+        when(settings.getDatabaseLoadThreads()).thenReturn(threads);
+        FlatFileDatabaseHandler<TestObject> handler = new FlatFileDatabaseHandler<>(plugin, TestObject.class, dbConnecter);
+        List<TestObject> objects = handler.loadObjects();
+        return objects.stream().map(TestObject::getUniqueId).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testBadFile() throws Exception {
+        addFile("a");
+        addFile("b");
+        new File(tableFolder, "bad.yml").createNewFile();
+        addFile("c");
+        Set<String> expected = new HashSet<>(Arrays.asList("a", "b", "c"));
+        // One thread and several threads skip the bad file in the same way
+        assertEquals(expected, load(1));
+        assertEquals(expected, load(4));
+    }
+
+    @Test
+    public void testOnlyBadFile() throws Exception {
+        new File(tableFolder, "bad.yml").createNewFile();
+        assertTrue(load(1).isEmpty());
+        assertTrue(load(4).isEmpty());
+    }
+}
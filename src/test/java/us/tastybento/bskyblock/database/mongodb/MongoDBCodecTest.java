@@ -0,0 +1,119 @@
+package us.tastybento.bskyblock.database.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+
+import us.tastybento.bskyblock.database.objects.DataObject;
+
+public class MongoDBCodecTest {
+
+    public static class TestObject implements DataObject {
+        @Expose
+        private String uniqueId;
+        @Expose
+        private String name;
+        @Expose
+        private long time;
+        @Expose
+        private int count;
+        @Expose
+        private List<String> lines;
+        @Expose
+        private Map<String, Integer> scores = new HashMap<>();
+
+        @Override
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public void setUniqueId(String uniqueId) {
+            this.uniqueId = uniqueId;
+        }
+    }
+
+    private MongoDBCodec<TestObject> codec;
+
+    @Before
+    public void setUp() {
+        codec = new MongoDBCodec<>(TestObject.class,
+                new GsonBuilder().excludeFieldsWithoutExposeAnnotation().enableComplexMapKeySerialization().serializeNulls().create(),
+                Logger.getAnonymousLogger());
+    }
+
+    private BsonDocument encode(TestObject object) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), object, EncoderContext.builder().build());
+        return document;
+    }
+
+    private TestObject decode(BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void testEncode() {
+        TestObject object = new TestObject();
+        object.setUniqueId("xyz");
+        // Must not be renamed
+        object.name = "uniqueId";
+        object.time = 5_000_000_000L;
+        object.count = 3;
+        object.scores.put("uniqueId", 2);
+        BsonDocument document = encode(object);
+        assertEquals("_id", document.getFirstKey());
+        assertEquals(new BsonString("xyz"), document.get("_id"));
+        assertFalse(document.containsKey("uniqueId"));
+        assertEquals(new BsonString("uniqueId"), document.get("name"));
+        assertEquals(new BsonInt64(5_000_000_000L), document.get("time"));
+        assertEquals(new BsonInt32(3), document.get("count"));
+        assertEquals(new BsonInt32(2), document.getDocument("scores").get("uniqueId"));
+        assertEquals(true, document.isNull("lines"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        TestObject object = new TestObject();
+        object.setUniqueId("abc");
+        object.name = "name";
+        object.time = 12L;
+        object.count = -7;
+        object.lines = Arrays.asList("one", "two");
+        object.scores.put("a", 1);
+        TestObject result = decode(encode(object));
+        assertEquals("abc", result.getUniqueId());
+        assertEquals("name", result.name);
+        assertEquals(12L, result.time);
+        assertEquals(-7, result.count);
+        assertEquals(object.lines, result.lines);
+        assertEquals(object.scores, result.scores);
+    }
+
+    @Test
+    public void testDecodeBadDocument() {
+        BsonDocument document = new BsonDocument("_id", new BsonString("abc"));
+        document.put("count", new BsonString("not a number"));
+        assertNull(decode(document));
+    }
+}
@@ -0,0 +1,75 @@
+package us.tastybento.bskyblock.database.mysql;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import us.tastybento.bskyblock.database.DatabaseConnecter;
+
+public class MySQLConnectionPoolTest {
+
+    private DatabaseConnecter dbConnecter;
+    private MySQLConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        dbConnecter = mock(DatabaseConnecter.class);
+        pool = new MySQLConnectionPool(dbConnecter, 1);
+    }
+
+    private Connection connection(boolean valid) throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(valid);
+        return connection;
+    }
+
+    @Test
+    public void testReuseValidConnection() throws SQLException {
+        Connection connection = connection(true);
+        when(dbConnecter.createConnection()).thenReturn(connection);
+        pool.release(pool.take());
+        assertSame(connection, pool.take());
+        verify(dbConnecter, times(1)).createConnection();
+    }
+
+    @Test
+    public void testReplaceStaleConnection() throws SQLException {
+        Connection stale = connection(false);
+        Connection fresh = connection(true);
+        when(dbConnecter.createConnection()).thenReturn(stale, fresh);
+        pool.release(pool.take());
+        // The stale connection is closed and its slot is used for a new one
+        assertSame(fresh, pool.take());
+        verify(stale).close();
+    }
+
+    @Test
+    public void testFailedConnectFreesSlot() throws SQLException {
+        Connection connection = connection(true);
+        when(dbConnecter.createConnection()).thenReturn(null, connection);
+        try {
+            pool.take();
+            fail();
+        } catch (SQLException e) {
+            // Expected
+        }
+        assertSame(connection, pool.take());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testClosed() throws SQLException {
+        pool.close();
+        pool.take();
+    }
+
+}
@@ -1,12 +1,22 @@
 package us.tastybento.bskyblock.database.mysql;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -43,6 +53,8 @@ public class MySQLDatabaseHandlerTest {
     private static String UNIQUE_ID = "xyz";
     private static MySQLDatabaseConnecter dbConn;
     private static World world;
+    private static Connection connection;
+    private static PreparedStatement ps;
     @Mock
     static BSkyBlock plugin = mock(BSkyBlock.class);
 
@@ -74,9 +86,10 @@ public class MySQLDatabaseHandlerTest {
         
         when(Bukkit.getLogger()).thenReturn(Logger.getAnonymousLogger());
         dbConn = mock(MySQLDatabaseConnecter.class);
-        Connection connection = mock(Connection.class);
+        connection = mock(Connection.class);
         when(dbConn.createConnection()).thenReturn(connection);
-        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.isValid(Mockito.anyInt())).thenReturn(true);
+        ps = mock(PreparedStatement.class);
         when(connection.prepareStatement(Mockito.anyString())).thenReturn(ps);
         Statement statement = mock(Statement.class);
         when(connection.createStatement()).thenReturn(statement);
@@ -153,4 +166,40 @@ public class MySQLDatabaseHandlerTest {
         
     }
 
+    @Test
+    public void testSaveObjects() throws Exception {
+        Island other = new Island();
+        other.setUniqueId("abc");
+        assertTrue(handler.saveObjects(Arrays.asList(instance, other)).isEmpty());
+        verify(connection, atLeast(1)).setAutoCommit(false);
+        verify(ps, atLeast(2)).addBatch();
+        verify(connection).commit();
+    }
+
+    @Test
+    public void testSaveObjectsRejectedRow() throws Exception {
+        MySQLDatabaseConnecter conn = mock(MySQLDatabaseConnecter.class);
+        Connection c = mock(Connection.class);
+        when(conn.createConnection()).thenReturn(c);
+        when(c.isValid(Mockito.anyInt())).thenReturn(true);
+        PreparedStatement p = mock(PreparedStatement.class);
+        when(c.prepareStatement(Mockito.anyString())).thenReturn(p);
+        when(c.createStatement()).thenReturn(mock(Statement.class));
+        when(p.executeBatch()).thenThrow(new BatchUpdateException());
+        // The second row is rejected
+        when(p.executeUpdate()).thenReturn(1).thenThrow(new SQLException("rejected")).thenReturn(1);
+        MySQLDatabaseHandler<Island> h = new MySQLDatabaseHandler<>(plugin, Island.class, conn);
+        Island a = new Island();
+        a.setUniqueId("a");
+        Island b = new Island();
+        b.setUniqueId("b");
+        Island d = new Island();
+        d.setUniqueId("d");
+
+        assertEquals(Collections.singletonList(b), h.saveObjects(Arrays.asList(a, b, d)));
+        verify(c).rollback();
+        verify(c, never()).commit();
+        verify(p, times(3)).executeUpdate();
+    }
+
 }
@@ -1,9 +1,13 @@
 package us.tastybento.bskyblock.listeners.flags;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashSet;
@@ -41,6 +45,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.Settings;
+import us.tastybento.bskyblock.api.flags.Flag;
+import us.tastybento.bskyblock.api.flags.FlagDecision;
 import us.tastybento.bskyblock.api.user.User;
 import us.tastybento.bskyblock.database.objects.Island;
 import us.tastybento.bskyblock.generators.IslandWorld;
@@ -48,6 +54,7 @@ import us.tastybento.bskyblock.lists.Flags;
 import us.tastybento.bskyblock.managers.FlagsManager;
 import us.tastybento.bskyblock.managers.IslandsManager;
 import us.tastybento.bskyblock.managers.LocalesManager;
+import us.tastybento.bskyblock.managers.island.IslandChunkCache;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest( { Flags.class} )
@@ -172,6 +179,140 @@ public class FireListenerTest {
         assertFalse(listener.checkFire(e, location, Flags.FIRE));
     }
 
+    @Test
+    public void testCheckFireSettingCache() {
+        // Island
+        IslandsManager im = mock(IslandsManager.class);
+        when(plugin.getIslands()).thenReturn(im);
+        Island island = mock(Island.class);
+        when(im.getIslandAt(Matchers.any())).thenReturn(Optional.of(island));
+        // The block's chunk lies entirely inside the island
+        IslandChunkCache chunkCache = mock(IslandChunkCache.class);
+        when(im.getChunkCache()).thenReturn(chunkCache);
+        when(chunkCache.get(Matchers.any(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(island);
+        Flag flag = mock(Flag.class);
+        when(flag.getOrdinal()).thenReturn(0);
+        when(island.isAllowed(flag)).thenReturn(false);
+
+        // Block on fire
+        Block block = mock(Block.class);
+        when(block.getLocation()).thenReturn(location);
+        BlockBurnEvent e = new BlockBurnEvent(block, block);
+        FireListener listener = new FireListener();
+        listener.setPlugin(plugin);
+
+        // Off the main thread, the island is looked up
+        listener.setPrimaryThread(() -> false);
+        assertTrue(listener.checkFire(e, location, flag));
+        verify(chunkCache, never()).get(Matchers.any(), Matchers.anyInt(), Matchers.anyInt());
+        verify(im, times(1)).getIslandAt(Matchers.any());
+
+        // On the main thread, the decision is kept for the chunk
+        listener.setPrimaryThread(() -> true);
+        assertTrue(listener.checkFire(e, location, flag));
+        assertTrue(listener.checkFire(e, location, flag));
+        verify(island, times(2)).isAllowed(flag);
+        verify(im, times(1)).getIslandAt(Matchers.any());
+
+        // Changing the island's flags makes the decision again
+        when(island.isAllowed(flag)).thenReturn(true);
+        when(island.getFlagsVersion()).thenReturn(1);
+        assertFalse(listener.checkFire(e, location, flag));
+        // So does adding or removing islands
+        when(island.isAllowed(flag)).thenReturn(false);
+        when(chunkCache.getVersion()).thenReturn(1);
+        assertTrue(listener.checkFire(e, location, flag));
+        verify(island, times(4)).isAllowed(flag);
+    }
+
+    @Test
+    public void testSharedContext() {
+        // Island
+        IslandsManager im = mock(IslandsManager.class);
+        when(plugin.getIslands()).thenReturn(im);
+        Island island = mock(Island.class);
+        when(im.getIslandAt(Matchers.any())).thenReturn(Optional.of(island));
+        when(island.isAllowed(Mockito.any())).thenReturn(false);
+        Flag flag = mock(Flag.class);
+
+        Block block = mock(Block.class);
+        when(block.getLocation()).thenReturn(location);
+        BlockBurnEvent e = new BlockBurnEvent(block, block);
+        FireListener listener = new FireListener();
+        listener.setPlugin(plugin);
+        FireListener other = new FireListener();
+        other.setPlugin(plugin);
+
+        // On the main thread, listeners handling the same event share the island lookup
+        listener.setPrimaryThread(() -> true);
+        other.setPrimaryThread(() -> true);
+        assertTrue(listener.checkFire(e, location, flag));
+        assertTrue(other.checkFire(e, location, flag));
+        verify(im, times(1)).getIslandAt(Matchers.any());
+        // A new event is looked up again
+        assertTrue(other.checkFire(new BlockBurnEvent(block, block), location, flag));
+        verify(im, times(2)).getIslandAt(Matchers.any());
+
+        // Off the main thread, nothing is shared
+        other.setPrimaryThread(() -> false);
+        assertTrue(other.checkFire(e, location, flag));
+        assertTrue(other.checkFire(e, location, flag));
+        verify(im, times(4)).getIslandAt(Matchers.any());
+    }
+
+    @Test
+    public void testCheckDoesNotMarkIslandUsed() {
+        // Island
+        IslandsManager im = mock(IslandsManager.class);
+        when(plugin.getIslands()).thenReturn(im);
+        Island island = mock(Island.class);
+        when(im.findIslandAt(Matchers.any())).thenReturn(Optional.of(island));
+        when(im.getIslandAt(Matchers.any())).thenReturn(Optional.of(island));
+        when(island.isAllowed(Mockito.any())).thenReturn(true);
+        Flag flag = mock(Flag.class);
+        when(flag.getType()).thenReturn(Flag.Type.SETTING);
+        FireListener listener = new FireListener();
+        listener.setPlugin(plugin);
+
+        // A check that only reads does not count as using the island
+        assertTrue(listener.check(location, null, flag).isAllowed());
+        verify(im, times(1)).findIslandAt(Matchers.any());
+        verify(im, never()).getIslandAt(Matchers.any());
+    }
+
+    @Test
+    public void testFakePlayer() {
+        // Island
+        IslandsManager im = mock(IslandsManager.class);
+        when(plugin.getIslands()).thenReturn(im);
+        Island island = mock(Island.class);
+        when(im.getIslandAt(Matchers.any())).thenReturn(Optional.of(island));
+        when(island.isAllowed(Mockito.any(), Mockito.any())).thenReturn(false);
+        Flag flag = mock(Flag.class);
+        when(flag.getType()).thenReturn(Flag.Type.PROTECTION);
+        User user = mock(User.class);
+        when(user.getName()).thenReturn("fake");
+        Block block = mock(Block.class);
+        when(block.getLocation()).thenReturn(location);
+        BlockBurnEvent e = new BlockBurnEvent(block, block);
+        FireListener listener = new FireListener();
+        listener.setPlugin(plugin);
+
+        // Fake players are let through without checking the island
+        plugin.getSettings().getFakePlayers().add("fake");
+        try {
+            assertEquals(FlagDecision.Reason.FAKE_PLAYER, listener.check(location, user, flag).getReason());
+            assertTrue(listener.checkIsland(e, location, flag, user));
+            assertFalse(e.isCancelled());
+            verify(island, never()).isAllowed(user, flag);
+        } finally {
+            plugin.getSettings().getFakePlayers().remove("fake");
+        }
+        // Other players are checked
+        assertFalse(listener.checkIsland(e, location, flag, user));
+        assertTrue(e.isCancelled());
+    }
+
     @Test
     public void testOnBlockBurn() {
         // Island
@@ -86,6 +86,13 @@ public class FlagsManagerTest {
         // This should pass
         Flag originalFlag = new FlagBuilder().id("ORIGINAL").icon(Material.EMERALD_BLOCK).listener(new BreakBlocksListener()).build();
         assertTrue(fm.registerFlag(originalFlag));
+        assertEquals(originalFlag, fm.getFlagByOrdinal(originalFlag.getOrdinal()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOnlyFlagsManagerSetsOrdinals() {
+        assertNotNull(new FlagsManager(mock(BSkyBlock.class)));
+        Flag.ordinalSetter();
     }
 
     @Test
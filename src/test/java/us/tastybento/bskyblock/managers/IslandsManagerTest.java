@@ -1,14 +1,31 @@
 package us.tastybento.bskyblock.managers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Server;
@@ -18,10 +35,13 @@ import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.inventory.ItemFactory;
 import org.bukkit.material.TrapDoor;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -29,7 +49,13 @@ import org.powermock.reflect.Whitebox;
 
 import us.tastybento.bskyblock.BSkyBlock;
 import us.tastybento.bskyblock.Settings;
+import us.tastybento.bskyblock.api.flags.Flag;
+import us.tastybento.bskyblock.database.BSBDatabase;
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.database.objects.IslandSummary;
 import us.tastybento.bskyblock.generators.IslandWorld;
+import us.tastybento.bskyblock.managers.island.IslandCache;
+import us.tastybento.bskyblock.managers.island.IslandChunkCache;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest( { BSkyBlock.class, IslandsManager.class })
@@ -223,4 +249,301 @@ public class IslandsManagerTest {
         assertNull(manager.bigScan(null, 10));
         
     }
+
+    /**
+     * Makes a manager with mock databases, in lazy loading mode
+     */
+    private IslandsManager lazyManager(BSBDatabase<Island> db, BSBDatabase<IslandSummary> summaryDb) {
+        Settings settings = mock(Settings.class);
+        when(plugin.getSettings()).thenReturn(settings);
+        when(settings.isLazyIslandLoading()).thenReturn(true);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        IslandsManager manager = new IslandsManager(plugin);
+        Whitebox.setInternalState(manager, "handler", db);
+        Whitebox.setInternalState(manager, "summaryHandler", summaryDb);
+        return manager;
+    }
+
+    /**
+     * Makes a hydrated island at x,0 that has nothing to save
+     */
+    private Island island(UUID owner, int x) {
+        Location center = mock(Location.class);
+        when(center.getWorld()).thenReturn(world);
+        when(center.getBlockX()).thenReturn(x);
+        Island island = new Island();
+        island.setUniqueId(owner.toString());
+        island.setCenter(center);
+        island.setOwner(owner);
+        island.setName("name");
+        island.setLevelHandicap(3);
+        island.setDirty(false);
+        return island;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testHydrateIsland() {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, mock(BSBDatabase.class));
+        Flag flag = mock(Flag.class);
+        when(flag.getOrdinal()).thenReturn(0);
+
+        // Index entry. Flags and the lock are in the index, so they stay loaded.
+        UUID owner = UUID.randomUUID();
+        Island island = island(owner, 0);
+        island.setFlag(flag, 500);
+        island.setLocked(true);
+        island = new IslandSummary(island).toIsland();
+        assertFalse(island.isHydrated());
+        assertEquals(500, island.getFlag(flag));
+        assertTrue(island.isLocked());
+        assertTrue(island.isAllowed(flag));
+        assertFalse(island.clearUsed());
+        verify(db, never()).loadObject(any());
+
+        Island details = island(owner, 0);
+        details.setName("saved");
+        when(db.loadObject(owner.toString())).thenReturn(details);
+        manager.hydrateIsland(island);
+        assertTrue(island.isHydrated());
+        assertEquals("saved", island.getName());
+        assertEquals(3, island.getLevelHandicap());
+        assertEquals(500, island.getFlag(flag));
+        assertTrue(island.isLocked());
+        assertTrue(island.getMembers().containsKey(owner));
+        // Loading the details counts as using them
+        assertTrue(island.clearUsed());
+        // Already loaded
+        manager.hydrateIsland(island);
+        verify(db, times(1)).loadObject(owner.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLookupHydratesInBackground() {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, mock(BSBDatabase.class));
+        Server server = mock(Server.class);
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        when(plugin.getServer()).thenReturn(server);
+        when(server.getScheduler()).thenReturn(scheduler);
+
+        UUID owner = UUID.randomUUID();
+        Island island = island(owner, 0);
+        island.dehydrate();
+        IslandCache cache = Whitebox.getInternalState(manager, "islandCache");
+        cache.addIsland(island);
+        when(db.loadObject(owner.toString())).thenReturn(island(owner, 0));
+
+        // The lookup marks the island used and loads its details on another thread, once
+        assertSame(island, manager.getIsland(owner));
+        assertSame(island, manager.getIsland(owner));
+        assertTrue(island.clearUsed());
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(1)).runTaskAsynchronously(eq((Plugin)plugin), task.capture());
+        verify(db, never()).loadObject(any());
+        assertFalse(island.isHydrated());
+        task.getValue().run();
+        assertTrue(island.isHydrated());
+        assertEquals("name", island.getName());
+        // Loaded, so the next lookup does not load it again
+        manager.getIsland(owner);
+        verify(scheduler, times(1)).runTaskAsynchronously(eq((Plugin)plugin), any(Runnable.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEvictIdleIslands() {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        BSBDatabase<IslandSummary> summaryDb = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, summaryDb);
+        IslandCache cache = Whitebox.getInternalState(manager, "islandCache");
+        Island idle = island(UUID.randomUUID(), 0);
+        Island changed = island(UUID.randomUUID(), 200);
+        Island spawn = island(UUID.randomUUID(), 400);
+        spawn.setSpawn(true);
+        spawn.setDirty(false);
+        cache.addIsland(idle);
+        cache.addIsland(changed);
+        cache.addIsland(spawn);
+        idle.markUsed();
+        changed.markUsed();
+
+        // Used since the last run, so they are kept
+        manager.evictIdleIslands();
+        assertTrue(idle.isHydrated());
+        assertTrue(changed.isHydrated());
+
+        // Reading the island, as the database does when it saves it, does not count as using it
+        idle.getName();
+        idle.getCreatedDate();
+        idle.getFlags();
+        idle.getSpawnPoint();
+        idle.getPurgeProtected();
+        changed.setName("changed");
+        manager.evictIdleIslands();
+        assertFalse(idle.isHydrated());
+        // Islands that have changed are saved first
+        assertTrue(changed.isHydrated());
+        verify(db).saveObjectAsync(changed);
+        verify(summaryDb).saveObjectAsync(any(IslandSummary.class));
+        assertFalse(changed.isDirty());
+
+        // Still being written
+        when(db.isPending(changed)).thenReturn(true);
+        manager.evictIdleIslands();
+        assertTrue(changed.isHydrated());
+        when(db.isPending(changed)).thenReturn(false);
+        manager.evictIdleIslands();
+        assertFalse(changed.isHydrated());
+
+        // Spawn is never unloaded
+        assertTrue(spawn.isHydrated());
+        verify(db, never()).saveObjectAsync(idle);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGetIslandAtChunkTable() {
+        IslandsManager manager = lazyManager(mock(BSBDatabase.class), mock(BSBDatabase.class));
+        Settings settings = plugin.getSettings();
+        when(settings.getIslandDistance()).thenReturn(100);
+        when(settings.getIslandProtectionRange()).thenReturn(100);
+        Server server = mock(Server.class);
+        when(plugin.getServer()).thenReturn(server);
+        doReturn(Collections.emptyList()).when(server).getOnlinePlayers();
+        IslandCache cache = Whitebox.getInternalState(manager, "islandCache");
+        cache.addWorld(world);
+        Location center = mock(Location.class);
+        when(center.getWorld()).thenReturn(world);
+        Island island = manager.createIsland(center, UUID.randomUUID());
+
+        // Chunk 1,1 is inside the island space [-100, 100)
+        IslandChunkCache chunks = manager.getChunkCache();
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getWorld()).thenReturn(world);
+        when(chunk.getX()).thenReturn(1);
+        when(chunk.getZ()).thenReturn(1);
+        chunks.addChunk(chunk);
+        assertEquals(1, chunks.size());
+        Location location = mock(Location.class);
+        when(location.getWorld()).thenReturn(world);
+        when(location.getBlockX()).thenReturn(20);
+        when(location.getBlockZ()).thenReturn(20);
+
+        // On the main thread, the chunk table answers
+        manager.setPrimaryThread(() -> true);
+        assertSame(island, manager.getIslandAt(location).get());
+        assertEquals(1, chunks.getHits());
+        // Off the main thread, the table is not used
+        manager.setPrimaryThread(() -> false);
+        assertSame(island, manager.getIslandAt(location).get());
+        assertEquals(1, chunks.getHits());
+        assertEquals(0, chunks.getMisses());
+
+        // Deleting the island drops its chunks
+        manager.deleteIsland(island, true);
+        assertEquals(0, chunks.size());
+        manager.setPrimaryThread(() -> true);
+        assertFalse(manager.getIslandAt(location).isPresent());
+        assertEquals(1, chunks.getMisses());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSaveUnchangedIsland() {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        BSBDatabase<IslandSummary> summaryDb = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, summaryDb);
+        IslandCache cache = Whitebox.getInternalState(manager, "islandCache");
+        Island island = island(UUID.randomUUID(), 0);
+        cache.addIsland(island);
+
+        manager.save(true);
+        verify(db, never()).saveObjectAsync(any());
+        verify(summaryDb, never()).saveObjectAsync(any());
+
+        // Changed, so it is saved once
+        island.setName("changed");
+        manager.save(true);
+        verify(db, times(1)).saveObjectAsync(island);
+        verify(summaryDb, times(1)).saveObjectAsync(any(IslandSummary.class));
+        manager.save(true);
+        verify(db, times(1)).saveObjectAsync(any());
+        verify(summaryDb, times(1)).saveObjectAsync(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLoadIslandIndexAddsMissingIslands() throws Exception {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        BSBDatabase<IslandSummary> summaryDb = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, summaryDb);
+        when(plugin.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        Island indexed = island(UUID.randomUUID(), 0);
+        Island missing = island(UUID.randomUUID(), 200);
+        // Only one island made it into the index
+        doAnswer(invocation -> {
+            ((Consumer<IslandSummary>)invocation.getArguments()[0]).accept(new IslandSummary(indexed));
+            return 1;
+        }).when(summaryDb).loadObjects(any(Consumer.class));
+        when(db.loadUniqueIds()).thenReturn(new HashSet<>(Arrays.asList(indexed.getUniqueId(), missing.getUniqueId())));
+        when(db.loadObject(missing.getUniqueId())).thenReturn(missing);
+
+        List<Island> loaded = new ArrayList<>();
+        Consumer<Island> consumer = loaded::add;
+        Whitebox.invokeMethod(manager, "loadIslandIndex", consumer);
+        assertEquals(2, loaded.size());
+        // The indexed island only has its index entry loaded
+        assertEquals(indexed.getUniqueId(), loaded.get(0).getUniqueId());
+        assertFalse(loaded.get(0).isHydrated());
+        // The missing island is loaded whole and added to the index
+        assertSame(missing, loaded.get(1));
+        verify(db, never()).loadObject(indexed.getUniqueId());
+        verify(db, never()).loadObjects(any(Consumer.class));
+        verify(summaryDb, times(1)).saveObjectAsync(any(IslandSummary.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLoadIslandIndexEmpty() throws Exception {
+        BSBDatabase<Island> db = mock(BSBDatabase.class);
+        BSBDatabase<IslandSummary> summaryDb = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(db, summaryDb);
+        Island island = island(UUID.randomUUID(), 0);
+        doAnswer(invocation -> {
+            ((Consumer<Island>)invocation.getArguments()[0]).accept(island);
+            return 1;
+        }).when(db).loadObjects(any(Consumer.class));
+
+        // With no index, every island is loaded and the index is made from them
+        List<Island> loaded = new ArrayList<>();
+        Consumer<Island> consumer = loaded::add;
+        Whitebox.invokeMethod(manager, "loadIslandIndex", consumer);
+        assertEquals(Collections.singletonList(island), loaded);
+        verify(summaryDb, times(1)).saveObjectAsync(any(IslandSummary.class));
+        verify(db, never()).loadUniqueIds();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testDropIslandIndex() throws Exception {
+        BSBDatabase<IslandSummary> summaryDb = mock(BSBDatabase.class);
+        IslandsManager manager = lazyManager(mock(BSBDatabase.class), summaryDb);
+        when(plugin.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        // Nothing to remove, so nothing is loaded or deleted
+        when(summaryDb.loadUniqueIds()).thenReturn(new HashSet<>());
+        Whitebox.invokeMethod(manager, "dropIslandIndex");
+        verify(summaryDb, never()).loadObjects();
+        verify(summaryDb, never()).deleteObject(any());
+        // Old entries are deleted by id without loading them
+        when(summaryDb.loadUniqueIds()).thenReturn(new HashSet<>(Arrays.asList("a", "b")));
+        Whitebox.invokeMethod(manager, "dropIslandIndex");
+        ArgumentCaptor<IslandSummary> deleted = ArgumentCaptor.forClass(IslandSummary.class);
+        verify(summaryDb, times(2)).deleteObject(deleted.capture());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")),
+                new HashSet<>(Arrays.asList(deleted.getAllValues().get(0).getUniqueId(), deleted.getAllValues().get(1).getUniqueId())));
+        verify(summaryDb, never()).loadObjects();
+    }
 }
@@ -0,0 +1,102 @@
+package us.tastybento.bskyblock.managers;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.plugin.PluginManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import us.tastybento.bskyblock.BSkyBlock;
+import us.tastybento.bskyblock.Settings;
+import us.tastybento.bskyblock.database.BSBDatabase;
+import us.tastybento.bskyblock.database.objects.Players;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest( { BSkyBlock.class })
+public class PlayersManagerTest {
+
+    @Mock
+    static BSkyBlock plugin = mock(BSkyBlock.class);
+
+    private BSBDatabase<Players> db;
+    private PlayersManager manager;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Server server = mock(Server.class);
+        when(server.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        when(server.getVersion()).thenReturn("BSB_Mocking");
+
+        PluginManager pluginManager = mock(PluginManager.class);
+        when(server.getPluginManager()).thenReturn(pluginManager);
+
+        ItemFactory itemFactory = mock(ItemFactory.class);
+        when(server.getItemFactory()).thenReturn(itemFactory);
+
+        Bukkit.setServer(server);
+
+        Whitebox.setInternalState(BSkyBlock.class, "instance", plugin);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        Settings settings = mock(Settings.class);
+        when(plugin.getSettings()).thenReturn(settings);
+        manager = new PlayersManager(plugin);
+        db = mock(BSBDatabase.class);
+        Whitebox.setInternalState(manager, "handler", db);
+    }
+
+    /**
+     * Adds a player to the cache that has nothing to save, as if just loaded
+     */
+    private Players player(UUID uuid) {
+        Players player = new Players();
+        player.setUniqueId(uuid.toString());
+        player.setDirty(false);
+        Map<UUID, Players> cache = Whitebox.getInternalState(manager, "playerCache");
+        cache.put(uuid, player);
+        return player;
+    }
+
+    @Test
+    public void testSaveUnchangedPlayer() {
+        UUID uuid = UUID.randomUUID();
+        Players player = player(uuid);
+        manager.save(uuid);
+        manager.save(true);
+        verify(db, never()).saveObjectAsync(player);
+
+        // Changed, so it is saved once
+        player.setLocale("fr-FR");
+        manager.save(uuid);
+        verify(db, times(1)).saveObjectAsync(player);
+        assertFalse(player.isDirty());
+        manager.save(uuid);
+        manager.save(true);
+        verify(db, times(1)).saveObjectAsync(player);
+
+        // Not in the cache
+        manager.save(UUID.randomUUID());
+        verify(db, times(1)).saveObjectAsync(player);
+    }
+}
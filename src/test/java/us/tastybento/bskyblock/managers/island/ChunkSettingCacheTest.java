@@ -0,0 +1,136 @@
+package us.tastybento.bskyblock.managers.island;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import us.tastybento.bskyblock.api.flags.Flag;
+import us.tastybento.bskyblock.database.objects.Island;
+
+public class ChunkSettingCacheTest {
+
+    private World world;
+    private Island island;
+    private Flag flag;
+    private IslandChunkCache chunkCache;
+    private ChunkSettingCache cache;
+
+    @Before
+    public void setUp() {
+        world = mock(World.class);
+        // The island space is [0, 100) in x and z
+        island = mock(Island.class);
+        when(island.getMinX()).thenReturn(0);
+        when(island.getMinZ()).thenReturn(0);
+        when(island.getRange()).thenReturn(50);
+        when(island.inIslandSpace(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = (int) invocation.getArguments()[0];
+            int z = (int) invocation.getArguments()[1];
+            return x >= 0 && x < 100 && z >= 0 && z < 100;
+        });
+        IslandCache islandCache = mock(IslandCache.class);
+        when(islandCache.isIslandWorld(world)).thenReturn(true);
+        when(islandCache.getWorlds()).thenReturn(Collections.singleton(world));
+        when(islandCache.getIslandAt(eq(world), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = (int) invocation.getArguments()[1];
+            int z = (int) invocation.getArguments()[2];
+            return island.inIslandSpace(x, z) ? island : null;
+        });
+        flag = mock(Flag.class);
+        when(flag.getOrdinal()).thenReturn(2);
+        when(island.isAllowed(flag)).thenReturn(true);
+
+        chunkCache = new IslandChunkCache(islandCache);
+        cache = new ChunkSettingCache(chunkCache);
+        // Chunk 1,1 is inside the island, chunk 6,1 reaches over its edge
+        chunkCache.addChunk(chunk(1, 1));
+        chunkCache.addChunk(chunk(6, 1));
+    }
+
+    private Chunk chunk(int x, int z) {
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getWorld()).thenReturn(world);
+        when(chunk.getX()).thenReturn(x);
+        when(chunk.getZ()).thenReturn(z);
+        return chunk;
+    }
+
+    @Test
+    public void testCachedDecision() {
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 31, 20, flag));
+        // The island is only asked once for this chunk
+        verify(island, times(1)).isAllowed(flag);
+        // Another chunk of the same island is decided separately
+        chunkCache.addChunk(chunk(2, 1));
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 40, 20, flag));
+        verify(island, times(2)).isAllowed(flag);
+    }
+
+    @Test
+    public void testUnknown() {
+        // Not loaded
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(world, 50, 50, flag));
+        // Not entirely inside the island
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(world, 100, 20, flag));
+        // Another world
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(mock(World.class), 16, 16, flag));
+        // Flag that is not registered
+        Flag unregistered = mock(Flag.class);
+        when(unregistered.getOrdinal()).thenReturn(-1);
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(world, 16, 16, unregistered));
+    }
+
+    @Test
+    public void testFlagsChanged() {
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        // The island's flags version changes when its flags change
+        when(island.isAllowed(flag)).thenReturn(false);
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        when(island.getFlagsVersion()).thenReturn(1);
+        assertEquals(ChunkSettingCache.DENIED, cache.isAllowed(world, 16, 16, flag));
+        verify(island, times(2)).isAllowed(flag);
+    }
+
+    @Test
+    public void testIslandRemoved() {
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        chunkCache.removeIsland(island);
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(world, 16, 16, flag));
+        // The island's chunks come back when it is added again
+        when(world.isChunkLoaded(1, 1)).thenReturn(true);
+        Chunk chunk = chunk(1, 1);
+        when(world.getChunkAt(1, 1)).thenReturn(chunk);
+        when(island.isAllowed(flag)).thenReturn(false);
+        chunkCache.addIsland(island);
+        assertEquals(ChunkSettingCache.DENIED, cache.isAllowed(world, 16, 16, flag));
+    }
+
+    @Test
+    public void testChunkUnloaded() {
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        Chunk chunk = chunk(1, 1);
+        cache.removeChunk(chunk);
+        chunkCache.removeChunk(chunk);
+        assertEquals(ChunkSettingCache.UNKNOWN, cache.isAllowed(world, 16, 16, flag));
+        // Loaded again
+        chunkCache.addChunk(chunk);
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        verify(island, times(2)).isAllowed(flag);
+        // Cleared
+        cache.clear();
+        assertEquals(ChunkSettingCache.ALLOWED, cache.isAllowed(world, 16, 16, flag));
+        verify(island, times(3)).isAllowed(flag);
+    }
+}
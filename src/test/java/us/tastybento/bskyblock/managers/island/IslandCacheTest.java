@@ -0,0 +1,285 @@
+package us.tastybento.bskyblock.managers.island;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import us.tastybento.bskyblock.BSkyBlock;
+import us.tastybento.bskyblock.Settings;
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.managers.PlayersManager;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ BSkyBlock.class })
+public class IslandCacheTest {
+
+    // Island distance, so island centers are 200 blocks apart
+    private static final int DISTANCE = 100;
+
+    private BSkyBlock plugin;
+    private World world;
+    private IslandCache cache;
+
+    @Before
+    public void setUp() {
+        plugin = mock(BSkyBlock.class);
+        Whitebox.setInternalState(BSkyBlock.class, "instance", plugin);
+        Settings settings = mock(Settings.class);
+        when(plugin.getSettings()).thenReturn(settings);
+        when(settings.getIslandDistance()).thenReturn(DISTANCE);
+        when(settings.getIslandProtectionRange()).thenReturn(50);
+        when(plugin.getLogger()).thenReturn(Logger.getAnonymousLogger());
+        PlayersManager players = mock(PlayersManager.class);
+        when(plugin.getPlayers()).thenReturn(players);
+
+        world = mock(World.class);
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        cache = new IslandCache();
+        cache.addWorld(world);
+    }
+
+    /**
+     * Makes an island centered on x,z in the test world
+     */
+    private Island island(int x, int z, UUID owner) {
+        Location center = mock(Location.class);
+        when(center.getWorld()).thenReturn(world);
+        when(center.getBlockX()).thenReturn(x);
+        when(center.getBlockZ()).thenReturn(z);
+        return new Island(center, owner, 50);
+    }
+
+    @Test
+    public void testDeleteTeamIsland() {
+        UUID owner = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        UUID joinedLater = UUID.randomUUID();
+        Island team = island(0, 0, owner);
+        team.addMember(member);
+        cache.addIsland(team);
+        team.addMember(joinedLater);
+        cache.addPlayer(joinedLater, team);
+        // Another island that must not be affected
+        UUID otherOwner = UUID.randomUUID();
+        Island other = cache.createIsland(island(200, 0, otherOwner));
+
+        assertSame(team, cache.get(owner));
+        assertSame(team, cache.get(member));
+        assertSame(team, cache.get(joinedLater));
+
+        cache.deleteIslandFromCache(team);
+
+        assertNull(cache.get(owner));
+        assertNull(cache.get(member));
+        assertNull(cache.get(joinedLater));
+        Map<Island, Set<UUID>> uuidsByIsland = Whitebox.getInternalState(cache, "uuidsByIsland");
+        assertFalse(uuidsByIsland.containsKey(team));
+        for (Set<UUID> uuids : uuidsByIsland.values()) {
+            assertFalse(uuids.contains(owner));
+            assertFalse(uuids.contains(member));
+            assertFalse(uuids.contains(joinedLater));
+        }
+        assertTrue(cache.checkPlayerIndexes().isEmpty());
+
+        assertSame(other, cache.get(otherOwner));
+        assertTrue(uuidsByIsland.get(other).contains(otherOwner));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveFromWorldGrids() {
+        World nether = mock(World.class);
+        when(nether.getUID()).thenReturn(UUID.randomUUID());
+        cache.addWorld(nether);
+        UUID owner = UUID.randomUUID();
+        Island island = cache.createIsland(island(-200, 400, owner));
+        assertSame(island, cache.getIslandAt(world, -200, 400));
+        assertSame(island, cache.getIslandAt(nether, -299, 499));
+        assertEquals(1, cache.getIslandsInBox(nether, -300, 300, -101, 499).size());
+
+        cache.deleteIslandFromCache(island);
+
+        assertNull(cache.getIslandAt(world, -200, 400));
+        assertNull(cache.getIslandAt(nether, -299, 499));
+        assertTrue(cache.getIslandsInBox(world, -300, 300, -101, 499).isEmpty());
+        assertTrue(cache.getIslandsInBox(nether, -300, 300, -101, 499).isEmpty());
+        assertTrue(cache.getNearestIslands(nether, -200, 400, 1).isEmpty());
+        assertEquals(0, cache.size());
+        // The spot can be used again
+        Island again = cache.createIsland(island(-200, 400, owner));
+        assertSame(again, cache.getIslandAt(nether, -200, 400));
+        assertSame(again, cache.get(owner));
+    }
+
+    @Test
+    public void testAddWorldAfterIslands() {
+        Island island = cache.createIsland(island(200, 0, UUID.randomUUID()));
+        World nether = mock(World.class);
+        when(nether.getUID()).thenReturn(UUID.randomUUID());
+        assertNull(cache.getIslandAt(nether, 200, 0));
+
+        cache.addWorld(nether);
+
+        assertSame(island, cache.getIslandAt(nether, 200, 0));
+        assertEquals(2, cache.getWorlds().size());
+        assertNull(cache.getIslandAt(mock(World.class), 200, 0));
+        assertNull(cache.getIslandAt(null, 200, 0));
+    }
+
+    @Test
+    public void testReadDuringCreateAndDelete() throws InterruptedException {
+        // These islands stay in the cache, so readers must always find them
+        UUID[] owners = new UUID[10];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+            cache.createIsland(island(i * 200, 0, owners[i]));
+        }
+        // These islands are created and deleted while the readers run
+        Island[] churn = new Island[50];
+        for (int i = 0; i < churn.length; i++) {
+            churn[i] = island(i * 200, 200 + (i % 5) * 200, UUID.randomUUID());
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < owners.length; i++) {
+                        Island island = cache.getIslandAt(world, i * 200 + 50, -50);
+                        if (island == null || island != cache.get(owners[i])
+                                || cache.getIslandsInBox(world, i * 200, 0, i * 200, 0).size() != 1) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int n = 0; n < 20; n++) {
+            for (Island island : churn) {
+                cache.createIsland(island);
+            }
+            for (Island island : churn) {
+                cache.deleteIslandFromCache(island);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, misses.get());
+        assertEquals(owners.length, cache.size());
+        assertTrue(cache.checkPlayerIndexes().isEmpty());
+    }
+
+    private static Set<Island> set(Island... islands) {
+        return new HashSet<>(Arrays.asList(islands));
+    }
+
+    @Test
+    public void testBoxCellBoundaries() {
+        // Island spaces are [-100, 100) and [100, 300) in x
+        Island a = cache.createIsland(island(0, 0, UUID.randomUUID()));
+        Island b = cache.createIsland(island(200, 0, UUID.randomUUID()));
+        assertEquals(set(a), new HashSet<>(cache.getIslandsInBox(world, 99, 0, 99, 0)));
+        assertEquals(set(b), new HashSet<>(cache.getIslandsInBox(world, 100, 0, 100, 0)));
+        assertEquals(set(a, b), new HashSet<>(cache.getIslandsInBox(world, 99, 0, 100, 0)));
+        assertEquals(set(a), new HashSet<>(cache.getIslandsInBox(world, -100, -100, -100, -100)));
+        assertTrue(cache.getIslandsInBox(world, -101, 0, -101, 0).isEmpty());
+        assertTrue(cache.getIslandsInBox(world, 0, 100, 300, 100).isEmpty());
+        // Box bigger than the number of islands, so every island is checked instead of every cell
+        assertEquals(set(a, b), new HashSet<>(cache.getIslandsInBox(world, -100000, -100000, 100000, 100000)));
+        // Empty box
+        assertTrue(cache.getIslandsInBox(world, 10, 0, 0, 0).isEmpty());
+    }
+
+    @Test
+    public void testBoxNegativeCoordinates() {
+        // Island spaces are [-500, -300) and [-300, -100) in x, [-300, -100) in z
+        Island a = cache.createIsland(island(-400, -200, UUID.randomUUID()));
+        Island b = cache.createIsland(island(-200, -200, UUID.randomUUID()));
+        assertEquals(set(a, b), new HashSet<>(cache.getIslandsInBox(world, -350, -250, -250, -150)));
+        assertEquals(set(b), new HashSet<>(cache.getIslandsInBox(world, -300, -300, -101, -101)));
+        assertEquals(set(a), new HashSet<>(cache.getIslandsInBox(world, -500, -300, -301, -101)));
+        assertTrue(cache.getIslandsInBox(world, -500, -100, -101, 0).isEmpty());
+        assertTrue(cache.getIslandsInBox(world, -501, -300, -501, -101).isEmpty());
+    }
+
+    @Test
+    public void testEmptyWorld() {
+        World empty = mock(World.class);
+        when(empty.getUID()).thenReturn(UUID.randomUUID());
+        cache.addWorld(empty);
+        for (World w : new World[] {world, empty, mock(World.class), null}) {
+            assertTrue(cache.getIslandsInBox(w, -1000, -1000, 1000, 1000).isEmpty());
+            assertTrue(cache.getIslandsInRadius(w, 0, 0, 1000).isEmpty());
+            assertTrue(cache.getNearestIslands(w, 0, 0, 3).isEmpty());
+        }
+    }
+
+    @Test
+    public void testRadius() {
+        Island a = cache.createIsland(island(0, 0, UUID.randomUUID()));
+        Island b = cache.createIsland(island(200, 0, UUID.randomUUID()));
+        Island c = cache.createIsland(island(-200, -200, UUID.randomUUID()));
+        // The radius includes islands exactly on it
+        assertEquals(set(a, b), new HashSet<>(cache.getIslandsInRadius(world, 0, 0, 200)));
+        assertEquals(set(a), new HashSet<>(cache.getIslandsInRadius(world, 0, 0, 199)));
+        assertEquals(set(a), new HashSet<>(cache.getIslandsInRadius(world, 0, 0, 0)));
+        assertTrue(cache.getIslandsInRadius(world, 0, 0, -1).isEmpty());
+        // About 141 blocks from a and c
+        assertEquals(set(a, c), new HashSet<>(cache.getIslandsInRadius(world, -100, -100, 142)));
+        assertTrue(cache.getIslandsInRadius(world, -100, -100, 141).isEmpty());
+        assertEquals(set(a, b, c), new HashSet<>(cache.getIslandsInRadius(world, 0, 0, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void testNearestTies() {
+        // Four islands 200 blocks from 0,0 and one further away
+        Island east = cache.createIsland(island(200, 0, UUID.randomUUID()));
+        Island west = cache.createIsland(island(-200, 0, UUID.randomUUID()));
+        Island south = cache.createIsland(island(0, 200, UUID.randomUUID()));
+        Island north = cache.createIsland(island(0, -200, UUID.randomUUID()));
+        Island far = cache.createIsland(island(400, 400, UUID.randomUUID()));
+
+        assertEquals(set(east, west, south, north), new HashSet<>(cache.getNearestIslands(world, 0, 0, 4)));
+        List<Island> two = cache.getNearestIslands(world, 0, 0, 2);
+        assertEquals(2, two.size());
+        assertTrue(set(east, west, south, north).containsAll(two));
+        List<Island> all = cache.getNearestIslands(world, 0, 0, 10);
+        assertEquals(5, all.size());
+        assertSame(far, all.get(4));
+        assertTrue(cache.getNearestIslands(world, 0, 0, 0).isEmpty());
+
+        // Far away in negative coordinates, west and north are the same distance
+        List<Island> one = cache.getNearestIslands(world, -10000, -10000, 1);
+        assertEquals(1, one.size());
+        assertTrue(set(west, north).contains(one.get(0)));
+        assertEquals(set(west, north), new HashSet<>(cache.getNearestIslands(world, -10000, -10000, 2)));
+        assertSame(far, cache.getNearestIslands(world, 10000, 10000, 1).get(0));
+    }
+}
@@ -0,0 +1,112 @@
+package us.tastybento.bskyblock.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentLongObjectMapTest {
+
+    @Test
+    public final void testPutGet() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(LongObjectMap.pack(1, 2), "a"));
+        assertEquals("a", map.put(LongObjectMap.pack(1, 2), "b"));
+        assertEquals("b", map.get(LongObjectMap.pack(1, 2)));
+        assertNull(map.get(LongObjectMap.pack(2, 1)));
+        assertTrue(map.containsKey(LongObjectMap.pack(1, 2)));
+        assertEquals(1, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testPutNull() {
+        new ConcurrentLongObjectMap<String>().put(0L, null);
+    }
+
+    @Test
+    public final void testRemoveAndPutAgain() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        map.put(1L, "a");
+        assertEquals("a", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertFalse(map.containsKey(1L));
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertEquals(1, map.size());
+        assertEquals(1, map.values().size());
+    }
+
+    @Test
+    public final void testRemoveAndResize() {
+        // Compare against a HashMap with random puts and removes to exercise probing, removed slots and rebuilding
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            long key = LongObjectMap.pack(random.nextInt(200) - 100, random.nextInt(200) - 100);
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (long key : reference.keySet()) {
+            assertEquals(Long.valueOf(key), map.get(key));
+        }
+        assertEquals(reference.size(), map.values().size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(reference.keySet().iterator().next()));
+    }
+
+    @Test
+    public final void testReadWhileWriting() throws InterruptedException {
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        // These keys are never removed, so readers must always find them
+        for (long key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (!done.get()) {
+                    for (long key = 0; key < 100; key++) {
+                        Long value = map.get(key);
+                        if (value == null || value != key) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        // Add and remove other keys so that slots are reused and the table is rebuilt
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            long key = 100 + random.nextInt(5000);
+            if (random.nextBoolean()) {
+                map.put(key, key);
+            } else {
+                map.remove(key);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(0, misses.get());
+    }
+}
@@ -0,0 +1,137 @@
+package us.tastybento.bskyblock.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.junit.Before;
+import org.junit.Test;
+
+import us.tastybento.bskyblock.database.objects.Island;
+import us.tastybento.bskyblock.managers.IslandsManager;
+
+public class ExplosionFilterTest {
+
+    private World world;
+    private IslandsManager islands;
+    // Island spaces are [0, 100) in z and [minX, minX + 100) in x
+    private Island left;
+    private Island right;
+    private Map<Island, Integer> checks;
+    private int offIslandChecks;
+
+    @Before
+    public void setUp() {
+        world = mock(World.class);
+        islands = mock(IslandsManager.class);
+        left = island(0);
+        right = island(100);
+        when(islands.getIslandAt(eq(world), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = (int) invocation.getArguments()[1];
+            int z = (int) invocation.getArguments()[2];
+            for (Island island : Arrays.asList(left, right)) {
+                if (island.inIslandSpace(x, z)) {
+                    return island;
+                }
+            }
+            return null;
+        });
+        checks = new HashMap<>();
+        offIslandChecks = 0;
+    }
+
+    private Island island(int minX) {
+        Island island = mock(Island.class);
+        when(island.inIslandSpace(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = (int) invocation.getArguments()[0];
+            int z = (int) invocation.getArguments()[1];
+            return x >= minX && x < minX + 100 && z >= 0 && z < 100;
+        });
+        return island;
+    }
+
+    private Block block(int x, int z) {
+        Block block = mock(Block.class);
+        when(block.getWorld()).thenReturn(world);
+        when(block.getX()).thenReturn(x);
+        when(block.getZ()).thenReturn(z);
+        return block;
+    }
+
+    /**
+     * Counts how often each island and open space are checked. Only the left island is allowed.
+     */
+    private boolean allowed(Island island) {
+        if (island == null) {
+            offIslandChecks++;
+            return false;
+        }
+        checks.merge(island, 1, Integer::sum);
+        return island == left;
+    }
+
+    @Test
+    public void testRemoveIf() {
+        List<Block> blocks = new ArrayList<>();
+        for (int x = 1; x <= 6; x++) {
+            blocks.add(block(x, 0));
+        }
+        List<Block> odd = Arrays.asList(blocks.get(0), blocks.get(2), blocks.get(4));
+        assertEquals(3, ExplosionFilter.removeIf(blocks, b -> b.getX() % 2 == 0));
+        assertEquals(odd, blocks);
+        assertEquals(0, ExplosionFilter.removeIf(blocks, b -> false));
+        assertEquals(odd, blocks);
+        assertEquals(3, ExplosionFilter.removeIf(blocks, b -> true));
+        assertTrue(blocks.isEmpty());
+    }
+
+    @Test
+    public void testRemoveProtected() {
+        Block a = block(95, 50);
+        Block b = block(99, 50);
+        Block c = block(100, 50);
+        Block d = block(98, 51);
+        Block e = block(101, 99);
+        Block f = block(97, 50);
+        List<Block> blocks = new ArrayList<>(Arrays.asList(a, b, c, d, e, f));
+        assertEquals(2, ExplosionFilter.removeProtected(blocks, islands, this::allowed));
+        assertEquals(Arrays.asList(a, b, d, f), blocks);
+        // Each island is only checked once, even though the explosion goes back and forth over the edge
+        assertEquals(Integer.valueOf(1), checks.get(left));
+        assertEquals(Integer.valueOf(1), checks.get(right));
+        assertEquals(2, checks.size());
+        assertEquals(0, offIslandChecks);
+    }
+
+    @Test
+    public void testRemoveProtectedOffIsland() {
+        Block on = block(50, 50);
+        Block off = block(50, 150);
+        Block offToo = block(150, -1);
+        List<Block> blocks = new ArrayList<>(Arrays.asList(on, off, offToo));
+        assertEquals(2, ExplosionFilter.removeProtected(blocks, islands, this::allowed));
+        assertEquals(Arrays.asList(on), blocks);
+        // Open space is only checked once
+        assertEquals(1, offIslandChecks);
+        assertEquals(Integer.valueOf(1), checks.get(left));
+    }
+
+    @Test
+    public void testRemoveProtectedEmpty() {
+        List<Block> blocks = new ArrayList<>();
+        assertEquals(0, ExplosionFilter.removeProtected(blocks, islands, this::allowed));
+        assertTrue(checks.isEmpty());
+        assertEquals(0, offIslandChecks);
+    }
+}
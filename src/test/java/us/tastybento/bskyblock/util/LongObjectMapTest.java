@@ -0,0 +1,63 @@
+package us.tastybento.bskyblock.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongObjectMapTest {
+
+    @Test
+    public final void testPutGet() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(LongObjectMap.pack(1, 2), "a"));
+        assertEquals("a", map.put(LongObjectMap.pack(1, 2), "b"));
+        assertEquals("b", map.get(LongObjectMap.pack(1, 2)));
+        assertNull(map.get(LongObjectMap.pack(2, 1)));
+        assertTrue(map.containsKey(LongObjectMap.pack(1, 2)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public final void testPack() {
+        assertFalse(LongObjectMap.pack(-1, 0) == LongObjectMap.pack(0, -1));
+        assertFalse(LongObjectMap.pack(0, -1) == LongObjectMap.pack(-1, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void testPutNull() {
+        new LongObjectMap<String>().put(0L, null);
+    }
+
+    @Test
+    public final void testRemoveAndResize() {
+        // Compare against a HashMap with random puts and removes to exercise probing and shifting
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            long key = LongObjectMap.pack(random.nextInt(200) - 100, random.nextInt(200) - 100);
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (long key : reference.keySet()) {
+            assertEquals(Long.valueOf(key), map.get(key));
+        }
+        assertEquals(reference.size(), map.values().size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(reference.keySet().iterator().next()));
+    }
+
+}
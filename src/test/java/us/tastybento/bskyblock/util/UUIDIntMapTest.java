@@ -0,0 +1,36 @@
+package us.tastybento.bskyblock.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class UUIDIntMapTest {
+
+    @Test
+    public final void testGet() {
+        Map<UUID, Integer> members = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            members.put(UUID.randomUUID(), i);
+        }
+        members.put(null, 5);
+        UUIDIntMap map = new UUIDIntMap(members);
+        members.forEach((uuid, rank) -> {
+            if (uuid != null) {
+                assertEquals(rank.intValue(), map.get(uuid, -100));
+            }
+        });
+        assertEquals(-100, map.get(UUID.randomUUID(), -100));
+        assertEquals(-100, map.get(null, -100));
+    }
+
+    @Test
+    public final void testEmpty() {
+        UUIDIntMap map = new UUIDIntMap(new HashMap<>());
+        assertEquals(0, map.get(UUID.randomUUID(), 0));
+    }
+
+}